@@ -0,0 +1,137 @@
+package com.mathwithmark.calculatorgamesolver.brutesolver;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+
+/**
+ * Solves many games at once, each on a thread of its own. When running on
+ * Java 21 or later, each game gets a virtual thread, found by reflection so
+ * the build still targets Java 8. On older JVMs, the games share a pool with a
+ * bounded number of threads.
+ *
+ * Games are solved with {@link Solver} unless another solving function is
+ * given, such as one that compiles each level before searching it.
+ *
+ * A BatchSolver owns its threads, so it should be closed when it is no longer
+ * needed.
+ */
+public class BatchSolver implements AutoCloseable {
+    private final ExecutorService EXECUTOR;
+    private final boolean VIRTUAL_THREADS;
+
+    /**
+     * Creates a solver that uses virtual threads if the JVM has them, or one
+     * thread per available processor if not
+     */
+    public BatchSolver() {
+        ExecutorService virtual = newVirtualThreadExecutor();
+        VIRTUAL_THREADS = virtual != null;
+        EXECUTOR =
+            VIRTUAL_THREADS
+                ? virtual
+                : Executors
+                    .newFixedThreadPool(
+                        Runtime.getRuntime().availableProcessors()
+                    );
+    }
+
+    /**
+     * Creates a solver that solves at most the given number of games at once,
+     * without virtual threads
+     * @throws IllegalArgumentException if maxThreads is not positive
+     */
+    public BatchSolver(int maxThreads) throws IllegalArgumentException {
+        EXECUTOR = Executors.newFixedThreadPool(maxThreads);
+        VIRTUAL_THREADS = false;
+    }
+
+    /**
+     * @return an executor that starts a virtual thread per task, or null if
+     * the JVM has no virtual threads
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            Method factory =
+                Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    /** Whether each game is solved on a virtual thread */
+    public boolean usesVirtualThreads() {
+        return VIRTUAL_THREADS;
+    }
+
+    /**
+     * Starts solving each of the given games with
+     * {@link Solver#getAllSolutions(Game)}
+     * @param games the games to solve
+     * @return a future result for each game, in the same order as the games
+     */
+    public List<CompletableFuture<Result>> solveAll(
+        Collection<? extends Game> games
+    ) {
+        return solveAll(games, Solver::getAllSolutions);
+    }
+
+    /**
+     * Starts solving each of the given games with the given function, such as
+     * a specialized solver for the type of game
+     * @param games the games to solve
+     * @param solve returns the same solutions as
+     * {@link Solver#getAllSolutions(Game)}
+     * @return a future result for each game, in the same order as the games
+     */
+    public <G extends Game> List<CompletableFuture<Result>> solveAll(
+        Collection<? extends G> games,
+        Function<? super G, List<List<String>>> solve
+    ) {
+        List<CompletableFuture<Result>> results = new ArrayList<>();
+        for (G game : games) {
+            CompletableFuture<Result> result =
+                CompletableFuture
+                    .supplyAsync(() -> solve(game, solve), EXECUTOR);
+            results.add(result);
+        }
+        return results;
+    }
+
+    /** @return the solutions to the game from the function, timed */
+    private static <G extends Game> Result solve(
+        G game,
+        Function<? super G, List<List<String>>> solve
+    ) {
+        long start = System.nanoTime();
+        List<List<String>> solutions = solve.apply(game);
+        return new Result(game, solutions, System.nanoTime() - start);
+    }
+
+    /** Stops the threads of this solver once their games are solved */
+    @Override
+    public void close() {
+        EXECUTOR.shutdown();
+    }
+
+    /** The solutions to one game of a batch, and how long they took to find */
+    public static class Result {
+        public final Game GAME;
+        /** The same as {@link Solver#getAllSolutions(Game)} */
+        public final List<List<String>> SOLUTIONS;
+        /** The time taken to solve the game, in nanoseconds */
+        public final long NANOS;
+
+        Result(Game game, List<List<String>> solutions, long nanos) {
+            GAME = game;
+            SOLUTIONS = solutions;
+            NANOS = nanos;
+        }
+    }
+}
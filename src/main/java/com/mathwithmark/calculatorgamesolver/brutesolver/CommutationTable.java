@@ -0,0 +1,62 @@
+package com.mathwithmark.calculatorgamesolver.brutesolver;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Which moves of a game commute. Two moves commute if making them in either
+ * order from any state reaches the same state, and one order is possible iff
+ * the other is. Moves are identified by their transition strings.
+ *
+ * The moves are listed in a canonical order. Of two commuting moves made one
+ * after the other, a search only needs to try them in canonical order.
+ */
+public class CommutationTable {
+    /** The position of each move in the canonical order */
+    private final Map<String, Integer> INDICES = new HashMap<>();
+    private final boolean[][] COMMUTES;
+
+    /**
+     * Creates a table in which no moves commute
+     * @param moves the transition strings of the moves, in canonical order
+     */
+    public CommutationTable(List<String> moves) {
+        for (int i = 0; i < moves.size(); i++) INDICES.put(moves.get(i), i);
+        COMMUTES = new boolean[moves.size()][moves.size()];
+    }
+
+    /** Records that the moves at the given positions commute */
+    public void setCommutes(int first, int second) {
+        COMMUTES[first][second] = true;
+        COMMUTES[second][first] = true;
+    }
+
+    /** Whether the two moves commute. Unknown moves commute with none. */
+    public boolean commutes(String first, String second) {
+        Integer index1 = INDICES.get(first), index2 = INDICES.get(second);
+        return index1 != null && index2 != null && COMMUTES[index1][index2];
+    }
+
+    /**
+     * Whether any move can be skipped right after the given one, see
+     * {@link #outOfOrder}
+     */
+    public boolean restricts(String previous) {
+        Integer index = INDICES.get(previous);
+        if (index == null) return false;
+        for (int next = 0; next < index; next++) {
+            if (COMMUTES[index][next]) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Whether making the next move right after the previous one can be
+     * skipped, because the two commute and the other order is canonical
+     */
+    public boolean outOfOrder(String previous, String next) {
+        return commutes(previous, next)
+            && INDICES.get(next) < INDICES.get(previous);
+    }
+}
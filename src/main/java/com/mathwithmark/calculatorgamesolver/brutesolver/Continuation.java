@@ -0,0 +1,20 @@
+package com.mathwithmark.calculatorgamesolver.brutesolver;
+
+/**
+ * The moves from a state to a won state, as a linked list. Lists share their
+ * tails, so all continuations of a subtree take little memory.
+ */
+class Continuation {
+    /** Describes the first move of this continuation */
+    final String TRANSITION_STRING;
+    /** The transposition key of the game after the first move */
+    final Object KEY;
+    /** The rest of the continuation, null if the first move wins */
+    final Continuation NEXT;
+
+    Continuation(String transitionString, Object key, Continuation next) {
+        TRANSITION_STRING = transitionString;
+        KEY = key;
+        NEXT = next;
+    }
+}
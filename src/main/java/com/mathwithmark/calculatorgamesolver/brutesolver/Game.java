@@ -5,8 +5,37 @@ import java.util.List;
 public interface Game {
     public boolean isWon();
     public boolean roughlyEquals(Game other);
+    public int getMovesLeft();
     public List<State> getSuccessors(State state);
 
+    /**
+     * Returns the successors of the state like {@link #getSuccessors(State)},
+     * but may leave out successors that are known, without making them, to be
+     * roughly equal to the state or one of its ancestors. Each one left out is
+     * recorded.
+     * @param pruning records the successors left out, or null to not record
+     * them
+     */
+    public default List<State> getSuccessors(State state, Pruning pruning) {
+        return getSuccessors(state);
+    }
+
+    /**
+     * Returns a key identifying this game regardless of its moves left. Two
+     * games have equal keys iff they are roughly equal, so the key can be used
+     * in hash-based structures such as a {@link TranspositionTable}.
+     */
+    public Object transpositionKey();
+
+    /**
+     * Returns which moves commute, in this game and every game reached from
+     * it, for searches that only try one order of commuting moves
+     * @return the commutation table, or null if no moves are known to commute
+     */
+    public default CommutationTable commutationTable() {
+        return null;
+    }
+
     /**
      * Creates a root state representing this game
      * @return a state with no parents whose game is this
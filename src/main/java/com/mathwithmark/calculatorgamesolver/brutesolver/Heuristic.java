@@ -0,0 +1,24 @@
+package com.mathwithmark.calculatorgamesolver.brutesolver;
+
+/**
+ * Estimates how many moves a game needs to be won. Estimates must never be
+ * more than the true number of moves, so that a search guided by them still
+ * finds the shortest solutions.
+ *
+ * A heuristic may be made for one game, in which case it only has to give
+ * bounds for that game and the games reached from it.
+ */
+public interface Heuristic {
+    /** Returned by {@link #lowerBound} for games that can't be won */
+    public static final int UNWINNABLE = Integer.MAX_VALUE;
+
+    /** A heuristic that knows nothing: every game may be won in 0 moves */
+    public static final Heuristic NONE = game -> 0;
+
+    /**
+     * @return at most the fewest moves that win the game. If the game can't be
+     * won with its moves left, any number more than its moves left, such as
+     * UNWINNABLE.
+     */
+    public int lowerBound(Game game);
+}
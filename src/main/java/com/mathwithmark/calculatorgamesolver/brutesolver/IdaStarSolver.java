@@ -0,0 +1,111 @@
+package com.mathwithmark.calculatorgamesolver.brutesolver;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Finds the shortest solutions to a game with iterative-deepening A* (IDA*).
+ * Each iteration is a depth-first search that skips every state whose depth
+ * plus the heuristic's lower bound is above the iteration's threshold. The
+ * next threshold is the smallest sum that was above it. Only the current path
+ * is kept in memory.
+ *
+ * The solutions are the same and in the same order as
+ * {@link Solver#getShortestSolutions(Game)}.
+ */
+public class IdaStarSolver {
+    /** Returned by searches that skipped no state */
+    private static final int NO_THRESHOLD = Integer.MAX_VALUE;
+
+    private final Heuristic HEURISTIC;
+    /** The keys of the current state and its ancestors */
+    private final Set<Object> PATH = new HashSet<>();
+    /** The number of states expanded by the last search */
+    private long expandedNodes = 0;
+
+    /** Creates a solver guided by the given heuristic */
+    public IdaStarSolver(Heuristic heuristic) {
+        HEURISTIC = heuristic;
+    }
+
+    /**
+     * Returns the solutions to the given game with as few moves as possible,
+     * the same as {@link Solver#getShortestSolutions(Game)}
+     * @param game The game to solve
+     * @return a list of solutions, each a list of transition strings, all the
+     * same length. Returns an empty list if the game is unsolveable.
+     */
+    public List<List<String>> getShortestSolutions(Game game) {
+        expandedNodes = 0;
+        List<List<String>> solutions = new ArrayList<>();
+        int bound = HEURISTIC.lowerBound(game);
+        if (bound > game.getMovesLeft()) return solutions;
+        // the root itself is never a solution
+        int threshold = Math.max(1, bound);
+        while (threshold <= game.getMovesLeft()) {
+            PATH.add(game.transpositionKey());
+            threshold = search(game.rootState(), 0, threshold, solutions);
+            PATH.clear();
+            if (!solutions.isEmpty() || threshold == NO_THRESHOLD) break;
+        }
+        return solutions;
+    }
+
+    /**
+     * @return the number of states expanded by the last call to
+     * {@link #getShortestSolutions}, over all iterations
+     */
+    public long getExpandedNodes() {
+        return expandedNodes;
+    }
+
+    /**
+     * Adds the solutions through the given state with at most threshold
+     * moves to the list. The state must be in the path already.
+     * @return the smallest depth plus lower bound above the threshold among
+     * the states skipped, or NO_THRESHOLD if none were skipped
+     */
+    private int search(
+        State state,
+        int depth,
+        int threshold,
+        List<List<String>> solutions
+    ) {
+        expandedNodes++;
+        List<State> children = new ArrayList<>();
+        List<Object> childKeys = new ArrayList<>();
+        for (State successor : state.getGame().getSuccessors(state, null)) {
+            Game successorGame = successor.getGame();
+            Object successorKey = successorGame.transpositionKey();
+            if (PATH.contains(successorKey)) continue; // redundant
+            children.add(successor);
+            childKeys.add(successorKey);
+            if (successorGame.isWon()) {
+                solutions.add(Solver.solutionFrom(successor));
+            }
+        }
+
+        int next = NO_THRESHOLD;
+        int childDepth = depth + 1;
+        // the most recent successor is expanded first, as with a stack
+        for (int i = children.size() - 1; i >= 0; i--) {
+            State child = children.get(i);
+            Game childGame = child.getGame();
+            int bound = HEURISTIC.lowerBound(childGame);
+            if (bound > childGame.getMovesLeft()) continue; // can't win
+            int estimate = childDepth + Math.max(bound, 1);
+            if (estimate > threshold) {
+                next = Math.min(next, estimate);
+                continue;
+            }
+            Object childKey = childKeys.get(i);
+            PATH.add(childKey);
+            int found = search(child, childDepth, threshold, solutions);
+            next = Math.min(next, found);
+            PATH.remove(childKey);
+        }
+        return next;
+    }
+}
@@ -0,0 +1,159 @@
+package com.mathwithmark.calculatorgamesolver.brutesolver;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Solves games on several threads by splitting the search tree into subtrees.
+ * A subtree is searched by a task of its own while it is estimated to be
+ * large, and by the thread that reached it otherwise. Idle threads steal
+ * waiting tasks from busy ones.
+ *
+ * Each subtree's solutions are merged in the order the sequential search would
+ * find them, so the solutions are the same and in the same order as
+ * {@link Solver#getAllSolutions(Game)}.
+ *
+ * A ParallelSolver owns a pool of threads, so it should be closed when it is
+ * no longer needed.
+ */
+public class ParallelSolver implements AutoCloseable {
+    /**
+     * The estimated number of states in a subtree above which its children are
+     * searched by tasks of their own
+     */
+    public static final long DEFAULT_SPLIT_THRESHOLD = 1 << 12;
+
+    private final ForkJoinPool POOL;
+    private final long SPLIT_THRESHOLD;
+
+    /** Creates a solver that uses one thread per available processor */
+    public ParallelSolver() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a solver that uses the given number of threads
+     * @throws IllegalArgumentException if parallelism is not positive
+     */
+    public ParallelSolver(int parallelism) throws IllegalArgumentException {
+        this(parallelism, DEFAULT_SPLIT_THRESHOLD);
+    }
+
+    /**
+     * Creates a solver that uses the given number of threads, and splits
+     * subtrees estimated to have more than the given number of states
+     * @throws IllegalArgumentException if parallelism is not positive or
+     * splitThreshold is negative
+     */
+    public ParallelSolver(int parallelism, long splitThreshold)
+        throws IllegalArgumentException {
+        if (splitThreshold < 0) {
+            throw new IllegalArgumentException(
+                "Negative split threshold: " + splitThreshold
+            );
+        }
+        POOL = new ForkJoinPool(parallelism);
+        SPLIT_THRESHOLD = splitThreshold;
+    }
+
+    /** @return the number of threads this solver uses */
+    public int getParallelism() {
+        return POOL.getParallelism();
+    }
+
+    /**
+     * Returns all solutions to the given game, the same as
+     * {@link Solver#getAllSolutions(Game)}
+     * @param game The game to solve
+     * @return a list of solutions, each a list of transition strings. Returns
+     * an empty list if the game is unsolveable.
+     */
+    public List<List<String>> getAllSolutions(Game game) {
+        return POOL.invoke(new SubtreeTask(game.rootState(), SPLIT_THRESHOLD));
+    }
+
+    /** Stops the threads of this solver once their tasks are done */
+    @Override
+    public void close() {
+        POOL.shutdown();
+    }
+
+    /** Searches the subtree below a state for solutions */
+    private static class SubtreeTask extends RecursiveTask<List<List<String>>> {
+        private static final long serialVersionUID = 1L;
+
+        private final State STATE;
+        private final long SPLIT_THRESHOLD;
+
+        SubtreeTask(State state, long splitThreshold) {
+            STATE = state;
+            SPLIT_THRESHOLD = splitThreshold;
+        }
+
+        @Override
+        protected List<List<String>> compute() {
+            List<List<String>> solutions = new ArrayList<>();
+            List<State> children = STATE.getSuccessors();
+            addWinning(children, solutions);
+            if (estimatedSize(children) <= SPLIT_THRESHOLD) {
+                for (int i = children.size() - 1; i >= 0; i--) {
+                    search(children.get(i), solutions);
+                }
+                return solutions;
+            }
+
+            List<SubtreeTask> tasks = new ArrayList<>();
+            for (State child : children) {
+                tasks.add(new SubtreeTask(child, SPLIT_THRESHOLD));
+            }
+            // the most recent child is searched first, as with a stack
+            for (int i = 0; i < tasks.size() - 1; i++) {
+                tasks.get(i).fork();
+            }
+            for (int i = tasks.size() - 1; i >= 0; i--) {
+                SubtreeTask task = tasks.get(i);
+                solutions
+                    .addAll(
+                        i == tasks.size() - 1 ? task.compute() : task.join()
+                    );
+            }
+            return solutions;
+        }
+
+        /**
+         * @return an estimate of the number of states below the children,
+         * assuming each state has as many children as the first
+         */
+        private static double estimatedSize(List<State> children) {
+            if (children.isEmpty()) return 0;
+            int movesLeft = children.get(0).getGame().getMovesLeft();
+            return Math.pow(children.size(), movesLeft + 1);
+        }
+
+        /**
+         * Searches the subtree below the state on this thread, adding its
+         * solutions to the list in the order of the sequential search
+         */
+        private static void search(State state, List<List<String>> solutions) {
+            List<State> children = state.getSuccessors();
+            addWinning(children, solutions);
+            for (int i = children.size() - 1; i >= 0; i--) {
+                search(children.get(i), solutions);
+            }
+        }
+
+        /** Adds a solution for each winning state to the list */
+        private static void addWinning(
+            List<State> states,
+            List<List<String>> solutions
+        ) {
+            for (State state : states) {
+                if (state.getGame().isWon()) {
+                    solutions.add(Solver.solutionFrom(state));
+                }
+            }
+        }
+    }
+}
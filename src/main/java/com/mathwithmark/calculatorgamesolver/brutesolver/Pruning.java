@@ -0,0 +1,57 @@
+package com.mathwithmark.calculatorgamesolver.brutesolver;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Counts the successors that games leave out because they are known to be
+ * redundant without being made, see {@link Game#getSuccessors(State, Pruning)}
+ */
+public class Pruning {
+    /** Returned by {@link #takeGenerations()} if no successor was left out */
+    static final int NONE = -1;
+
+    /** The number of successors left out, by the move that would make them */
+    private final Map<String, Long> COUNTS = new TreeMap<>();
+    private long total = 0;
+
+    /**
+     * How many generations above its state was the farthest ancestor that a
+     * left out successor was equal to, since this was last taken
+     */
+    private int generations = NONE;
+
+    /**
+     * Records that the successor made by the given move was left out, because
+     * it would be roughly equal to the state or one of its ancestors
+     * @param move the transition string of the move
+     * @param generations 0 if the successor would equal the state, 1 if it
+     * would equal its parent, and so on
+     */
+    public void record(String move, int generations) {
+        COUNTS.merge(move, 1L, Long::sum);
+        total++;
+        this.generations = Math.max(this.generations, generations);
+    }
+
+    /** @return the number of successors left out, by move */
+    public Map<String, Long> getCounts() {
+        return Collections.unmodifiableMap(COUNTS);
+    }
+
+    /** @return the number of successors left out */
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * @return the most generations recorded since this was last called, or
+     * NONE if nothing was recorded
+     */
+    int takeGenerations() {
+        int taken = generations;
+        generations = NONE;
+        return taken;
+    }
+}
@@ -0,0 +1,27 @@
+package com.mathwithmark.calculatorgamesolver.brutesolver;
+
+/**
+ * Identifies a state of a game by its transposition key and moves left. States
+ * with the same key and moves left have the same winning continuations.
+ */
+class ResultKey {
+    private final Object KEY;
+    private final int MOVES_LEFT;
+
+    ResultKey(Object key, int movesLeft) {
+        KEY = key;
+        MOVES_LEFT = movesLeft;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (!(other instanceof ResultKey)) return false;
+        ResultKey otherKey = (ResultKey) other;
+        return otherKey.MOVES_LEFT == MOVES_LEFT && otherKey.KEY.equals(KEY);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * KEY.hashCode() + MOVES_LEFT;
+    }
+}
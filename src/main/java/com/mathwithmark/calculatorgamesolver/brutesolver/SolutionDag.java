@@ -0,0 +1,222 @@
+package com.mathwithmark.calculatorgamesolver.brutesolver;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The solutions of a game as a directed acyclic graph. Each node is a state,
+ * identified by its transposition key and moves left, and stores the number of
+ * winning continuations from it. A state reached through different move orders
+ * is one node, so the graph is built in time proportional to the number of
+ * distinct states rather than the number of solutions.
+ *
+ * The solutions are exactly those of {@link Solver#getAllSolutions(Game)}: a
+ * sequence of moves ending in a won state that never returns to a state of
+ * its own path, the start included. Whether a state repeats depends on the
+ * path to it, so as in the solver's transposition table, a node's count is
+ * only kept if it was found without any state being left out because of an
+ * ancestor outside the node. It is reused from a path only if none of the
+ * states on the node's solutions are on that path. Rather than keep those
+ * states, each node keeps a 64 bit signature with one bit set for each, so a
+ * path that only shares bits with them is also counted again, and memory
+ * stays constant per node.
+ *
+ * Solutions are ordered the same way as in {@link Solver#getAllSolutions}: the
+ * moves that win from a state come first, then the solutions through each
+ * successor, from the last successor to the first.
+ */
+public class SolutionDag {
+    /** Returned from counts that did not depend on any ancestor */
+    private static final int INDEPENDENT = Integer.MAX_VALUE;
+
+    private final Game ROOT;
+    /** The count of each state found without depending on its ancestors */
+    private final Map<ResultKey, Count> COUNTS = new HashMap<>();
+    /** The keys of the current state and its ancestors, with their depth */
+    private final Map<Object, Integer> PATH = new HashMap<>();
+    /** The number of keys in PATH with each bit of their signature */
+    private final int[] PATH_BITS = new int[Long.SIZE];
+    /** The signature of the keys in PATH */
+    private long pathSignature = 0;
+    private final long NUM_SOLUTIONS;
+
+    /**
+     * Builds the graph of the given game's solutions
+     * @throws ArithmeticException if the game has more than Long.MAX_VALUE
+     * solutions
+     */
+    public SolutionDag(Game game) throws ArithmeticException {
+        ROOT = game;
+        Object key = game.transpositionKey();
+        enter(key, 0);
+        NUM_SOLUTIONS = count(game.rootState(), key, 0).SOLUTIONS;
+        leave(key);
+    }
+
+    /** @return the number of solutions of the game */
+    public long countSolutions() {
+        return NUM_SOLUTIONS;
+    }
+
+    /** @return the number of states whose count is kept */
+    public int size() {
+        return COUNTS.size();
+    }
+
+    /**
+     * Finds a solution without finding the solutions before it
+     * @param index the index of the solution, from 0
+     * @return the transition strings of the solution
+     * @throws IndexOutOfBoundsException if the index is negative or at least
+     * the number of solutions
+     */
+    public List<String> getSolution(long index)
+        throws IndexOutOfBoundsException {
+        if (index < 0 || index >= NUM_SOLUTIONS) {
+            throw new IndexOutOfBoundsException(
+                String
+                    .format(
+                        "Index %d, number of solutions %d",
+                        index,
+                        NUM_SOLUTIONS
+                    )
+            );
+        }
+        List<String> transitionStrings = new ArrayList<>();
+        State state = ROOT.rootState();
+        enter(ROOT.transpositionKey(), 0);
+        try {
+            for (int depth = 0;; depth++) {
+                List<State> children = new ArrayList<>();
+                List<Object> childKeys = new ArrayList<>();
+                for (State successor : state.getGame().getSuccessors(state)) {
+                    Game successorGame = successor.getGame();
+                    Object successorKey = successorGame.transpositionKey();
+                    if (PATH.containsKey(successorKey)) continue;
+                    children.add(successor);
+                    childKeys.add(successorKey);
+                    if (!successorGame.isWon()) continue;
+                    if (index == 0) {
+                        transitionStrings.add(successor.getTransitionString());
+                        return transitionStrings;
+                    }
+                    index--;
+                }
+                for (int i = children.size() - 1; i >= 0; i--) {
+                    State child = children.get(i);
+                    Object childKey = childKeys.get(i);
+                    enter(childKey, depth + 1);
+                    long count = count(child, childKey, depth + 1).SOLUTIONS;
+                    if (index < count) {
+                        transitionStrings.add(child.getTransitionString());
+                        state = child;
+                        break;
+                    }
+                    leave(childKey);
+                    index -= count;
+                }
+            }
+        } finally {
+            PATH.clear();
+            Arrays.fill(PATH_BITS, 0);
+            pathSignature = 0;
+        }
+    }
+
+    /**
+     * Counts the winning continuations from the given state that don't
+     * return to a state of the path. The state must be in the path already.
+     * @param key the transposition key of the state
+     * @param depth the depth of the state in the path
+     */
+    private Count count(State state, Object key, int depth) {
+        Game game = state.getGame();
+        ResultKey resultKey = new ResultKey(key, game.getMovesLeft());
+        Count known = COUNTS.get(resultKey);
+        if (known != null && avoidsAncestors(known, key)) return known;
+
+        long solutions = 0, signature = 0;
+        int lowest = INDEPENDENT;
+        for (State successor : game.getSuccessors(state)) {
+            Game successorGame = successor.getGame();
+            Object successorKey = successorGame.transpositionKey();
+            Integer ancestorDepth = PATH.get(successorKey);
+            if (ancestorDepth != null) { // returns to a state of the path
+                lowest = Math.min(lowest, ancestorDepth);
+                continue;
+            }
+            enter(successorKey, depth + 1);
+            Count child = count(successor, successorKey, depth + 1);
+            leave(successorKey);
+            long through = child.SOLUTIONS;
+            if (successorGame.isWon()) through = Math.addExact(through, 1);
+            if (through > 0) signature |= bit(successorKey) | child.SIGNATURE;
+            solutions = Math.addExact(solutions, through);
+            lowest = Math.min(lowest, child.LOWEST);
+        }
+        // Only kept if no ancestor outside the state left anything out
+        if (lowest >= depth) {
+            COUNTS.put(resultKey, new Count(solutions, signature, INDEPENDENT));
+        }
+        return new Count(solutions, signature, lowest);
+    }
+
+    /**
+     * Whether none of the states on the solutions of the count can be on the
+     * path, apart from the state counted, so the count holds for the path
+     */
+    private boolean avoidsAncestors(Count count, Object key) {
+        long ancestors = pathSignature;
+        int bit = bitIndex(key);
+        if (PATH_BITS[bit] == 1) ancestors &= ~(1L << bit);
+        return (count.SIGNATURE & ancestors) == 0;
+    }
+
+    /** Adds the given key to the path */
+    private void enter(Object key, int depth) {
+        PATH.put(key, depth);
+        int bit = bitIndex(key);
+        PATH_BITS[bit]++;
+        pathSignature |= 1L << bit;
+    }
+
+    /** Removes the given key from the path */
+    private void leave(Object key) {
+        PATH.remove(key);
+        int bit = bitIndex(key);
+        if (--PATH_BITS[bit] == 0) pathSignature &= ~(1L << bit);
+    }
+
+    /** @return the signature of the given key, with one bit set */
+    private static long bit(Object key) {
+        return 1L << bitIndex(key);
+    }
+
+    /** @return the index of the bit set in the given key's signature */
+    private static int bitIndex(Object key) {
+        // Spread the hash so that its high bits depend on all of it
+        return (key.hashCode() * 0x9E3779B9) >>> (Integer.SIZE - 6);
+    }
+
+    /** The winning continuations from a state */
+    private static class Count {
+        final long SOLUTIONS;
+        /** The signatures of the states on the continuations, combined */
+        final long SIGNATURE;
+        /**
+         * The depth of the shallowest ancestor that a state was left out for
+         * returning to, or INDEPENDENT if none was. Kept counts are
+         * INDEPENDENT of every path they are reused from.
+         */
+        final int LOWEST;
+
+        Count(long solutions, long signature, int lowest) {
+            SOLUTIONS = solutions;
+            SIGNATURE = signature;
+            LOWEST = lowest;
+        }
+    }
+}
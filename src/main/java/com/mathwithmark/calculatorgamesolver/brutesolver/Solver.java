@@ -2,11 +2,26 @@ package com.mathwithmark.calculatorgamesolver.brutesolver;
 
 import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public final class Solver {
+    /** The search limit of searches that are only limited by moves left */
+    private static final int NO_LIMIT = Integer.MAX_VALUE;
+
     /**
      * Returns all solutions to the given game.
      * @param game The game to solve
@@ -15,21 +30,187 @@ public final class Solver {
      * is unsolveable.
      */
     public static List<List<String>> getAllSolutions(Game game) {
-        Deque<State> stack = new ArrayDeque<>();
+        return getAllSolutions(game, new TranspositionTable());
+    }
+
+    /**
+     * Returns all solutions to the given game, in the same order as
+     * {@link #getAllSolutions(Game)}. What is learned about the game is kept in
+     * the given table, which may be shared between searches of the same game.
+     * @param game The game to solve
+     * @param table the transposition table to use
+     * @return a list of solutions, each a list of transition strings. Returns
+     * an empty list if the game is unsolveable.
+     */
+    public static List<List<String>> getAllSolutions(
+        Game game,
+        TranspositionTable table
+    ) {
+        return solutionsFrom(
+            new Search(table, false, NO_LIMIT, null, new Pruning()).run(game)
+        );
+    }
+
+    /**
+     * Returns all solutions to the given game, the same as
+     * {@link #getAllSolutions(Game)}, recording the successors that were left
+     * out without being made because they were known to be redundant
+     * @param game The game to solve
+     * @param pruning records the successors left out
+     * @return a list of solutions, each a list of transition strings. Returns
+     * an empty list if the game is unsolveable.
+     */
+    public static List<List<String>> getAllSolutions(
+        Game game,
+        Pruning pruning
+    ) {
+        return solutionsFrom(
+            new Search(new TranspositionTable(), false, NO_LIMIT, null, pruning)
+                .run(game)
+        );
+    }
+
+    /**
+     * Returns the solutions to the given game whose commuting moves are in
+     * canonical order, in the same order as {@link #getAllSolutions(Game)}.
+     * Two moves commute if making them in either order reaches the same state,
+     * see {@link Game#commutationTable()}. Only one order of each run of
+     * commuting moves is searched, so each solution stands for all of its
+     * reorderings, which {@link #getAllSolutions(Game)} lists one by one.
+     *
+     * Every solution can be reordered into a canonical one, which is found
+     * unless the reordering repeats a state.
+     * @param game The game to solve
+     * @return a list of solutions, each a list of transition strings. Returns
+     * an empty list if the game is unsolveable.
+     */
+    public static List<List<String>> getCanonicalSolutions(Game game) {
+        Search search =
+            new Search(
+                new TranspositionTable(),
+                false,
+                NO_LIMIT,
+                game.commutationTable(),
+                new Pruning()
+            );
+        return solutionsFrom(search.run(game));
+    }
+
+    /**
+     * Returns the solutions to the given game with as few moves as possible, in
+     * the same order as {@link #getAllSolutions(Game)}. Searches with
+     * iterative deepening, so no solution longer than the shortest is
+     * searched for.
+     * @param game The game to solve
+     * @return a list of solutions, each a list of transition strings, all the
+     * same length. Returns an empty list if the game is unsolveable.
+     */
+    public static List<List<String>> getShortestSolutions(Game game) {
+        return getShortestSolutions(game, new TranspositionTable());
+    }
+
+    /**
+     * Returns the solutions to the given game with as few moves as possible,
+     * the same as {@link #getShortestSolutions(Game)}. What is learned about
+     * the game is kept in the given table, so each deeper search reuses what
+     * the shallower ones found.
+     * @param game The game to solve
+     * @param table the transposition table to use
+     * @return a list of solutions, each a list of transition strings, all the
+     * same length. Returns an empty list if the game is unsolveable.
+     */
+    public static List<List<String>> getShortestSolutions(
+        Game game,
+        TranspositionTable table
+    ) {
+        for (int limit = 1; limit <= game.getMovesLeft(); limit++) {
+            // Every shorter solution would have been found with a lower limit
+            List<Continuation> continuations =
+                new Search(table, false, limit, null, new Pruning()).run(game);
+            if (!continuations.isEmpty()) return solutionsFrom(continuations);
+        }
+        return new ArrayList<>();
+    }
+
+    /**
+     * Counts the solutions to the given game without listing them, the same
+     * number as {@code getAllSolutions(game).size()}, see {@link SolutionDag}.
+     * @param game The game to solve
+     * @return the number of solutions
+     * @throws ArithmeticException if there are more than Long.MAX_VALUE
+     */
+    public static long countSolutions(Game game) throws ArithmeticException {
+        return new SolutionDag(game).countSolutions();
+    }
+
+    /**
+     * Returns all solutions to the given game as a lazy stream, in the same
+     * order as {@link #getAllSolutions(Game)}. The search only runs as far as
+     * needed to find the next solution, so a limited stream stops searching
+     * once enough solutions are found. Only the current path is kept in
+     * memory.
+     * @param game The game to solve
+     * @return a stream of solutions, each a list of transition strings. Empty
+     * if the game is unsolveable.
+     */
+    public static Stream<List<String>> solutions(Game game) {
+        Spliterator<List<String>> spliterator =
+            Spliterators
+                .spliteratorUnknownSize(
+                    new SolutionIterator(game),
+                    Spliterator.ORDERED | Spliterator.NONNULL
+                );
+        return StreamSupport.stream(spliterator, false);
+    }
+
+    /**
+     * Finds one solution to the given game, stopping the search as soon as a
+     * won state is found
+     * @param game The game to solve
+     * @return a list of transition strings, or empty if the game is
+     * unsolveable
+     */
+    public static Optional<List<String>> findAnySolution(Game game) {
+        return Optional
+            .ofNullable(getFirstSolution(game, new TranspositionTable()));
+    }
+
+    /**
+     * Returns one solution to the given game, stopping the search as soon as
+     * it is found.
+     * @param game The game to solve
+     * @param table the transposition table to use
+     * @return a list of transition strings, or null if the game is unsolveable
+     */
+    public static List<String> getFirstSolution(
+        Game game,
+        TranspositionTable table
+    ) {
+        List<Continuation> continuations =
+            new Search(table, true, NO_LIMIT, null, new Pruning()).run(game);
+        if (continuations.isEmpty()) return null;
+        return transitionStrings(continuations.get(0));
+    }
+
+    /** @return the transition strings of each of the given continuations */
+    private static List<List<String>> solutionsFrom(
+        List<Continuation> continuations
+    ) {
         List<List<String>> solutions = new ArrayList<>();
-        stack.addFirst(game.rootState());
+        for (Continuation continuation : continuations) {
+            solutions.add(transitionStrings(continuation));
+        }
+        return solutions;
+    }
 
-        while (true) {
-            if (stack.isEmpty()) {
-                return solutions;
-            }
-            for (State successor : stack.removeFirst().getSuccessors()) {
-                if (successor.getGame().isWon()) {
-                    solutions.add(solutionFrom(successor));
-                }
-                stack.addFirst(successor);
-            }
+    /** @return the transition strings of the given continuation, in order */
+    private static List<String> transitionStrings(Continuation continuation) {
+        List<String> transitionStrings = new ArrayList<>();
+        while (continuation != null) {
+            transitionStrings.add(continuation.TRANSITION_STRING);
+            continuation = continuation.NEXT;
         }
+        return transitionStrings;
     }
 
     /**
@@ -53,7 +234,7 @@ public final class Solver {
      * next to the game. Each transition string is separated by a newline
      * character.
      */
-    private static List<String> solutionFrom(State state) {
+    static List<String> solutionFrom(State state) {
         List<State> states = orderedStates(state);
         List<String> transitionStrings = new ArrayList<>();
         for (State element : states) {
@@ -63,4 +244,313 @@ public final class Solver {
         }
         return transitionStrings;
     }
+
+    /**
+     * A depth-first search that uses a transposition table. It expands states
+     * in the same order as a stack-based search, so solutions are found in the
+     * same order.
+     *
+     * A state is redundant if it is roughly equal to one of its ancestors. The
+     * result of a subtree is only stored in the table if no state in it was
+     * redundant because of an ancestor outside the subtree, as only then is the
+     * result the same wherever the subtree is reached from.
+     *
+     * A search may be limited to solutions of at most a given number of moves.
+     * A state is then searched as if its moves left were the fewer of its own
+     * and the moves left before the limit, which keeps the table valid for
+     * searches with any limit.
+     *
+     * A search may also skip moves that commute with the move before them and
+     * come before it in canonical order. What is found below a state then
+     * depends on the move that reached it, which is kept in the table's keys.
+     */
+    private static class Search {
+        /** Returned from expansions that did not depend on any ancestor */
+        private static final int INDEPENDENT = Integer.MAX_VALUE;
+        /** Returned from expansions that depended on earlier searches */
+        private static final int DEPENDENT = -1;
+
+        private final TranspositionTable TABLE;
+        /** Whether to stop after the first solution */
+        private final boolean FIRST_ONLY;
+        /** The most moves a solution may have */
+        private final int LIMIT;
+        /** Which moves commute, or null to search every order of moves */
+        private final CommutationTable COMMUTATIONS;
+        /** Records the successors left out without being made */
+        private final Pruning PRUNING;
+        /** The keys of the current state and its ancestors, with their depth */
+        private final Map<Object, Integer> PATH = new HashMap<>();
+
+        Search(
+            TranspositionTable table,
+            boolean firstOnly,
+            int limit,
+            CommutationTable commutations,
+            Pruning pruning
+        ) {
+            TABLE = table;
+            FIRST_ONLY = firstOnly;
+            LIMIT = limit;
+            COMMUTATIONS = commutations;
+            PRUNING = pruning;
+        }
+
+        /** @return the winning continuations from the given game */
+        List<Continuation> run(Game game) {
+            TABLE.clearExpanded();
+            List<Continuation> continuations = new ArrayList<>();
+            State root = game.rootState();
+            Object key = game.transpositionKey();
+            PATH.put(key, 0);
+            expand(root, key, 0, continuations);
+            TABLE.clearExpanded();
+            return continuations;
+        }
+
+        /**
+         * Adds the winning continuations from the given state to the list.
+         * The state must be in the path already.
+         * @return the depth of the shallowest ancestor that made a state in the
+         * subtree redundant, INDEPENDENT if there was none, or DEPENDENT if an
+         * earlier search was relied on
+         */
+        private int expand(
+            State state,
+            Object key,
+            int depth,
+            List<Continuation> continuations
+        ) {
+            if (depth >= LIMIT) return INDEPENDENT;
+            List<State> children = new ArrayList<>();
+            List<Object> childKeys = new ArrayList<>();
+            List<State> successors =
+                state.getGame().getSuccessors(state, PRUNING);
+            // successors left out were equal to the state or an ancestor
+            int generations = PRUNING.takeGenerations();
+            int lowest =
+                generations == Pruning.NONE ? INDEPENDENT : depth - generations;
+            for (State successor : successors) {
+                if (outOfOrder(state, successor)) continue;
+                Game successorGame = successor.getGame();
+                Object successorKey = successorGame.transpositionKey();
+                Integer ancestorDepth = PATH.get(successorKey);
+                if (ancestorDepth != null) { // redundant
+                    lowest = Math.min(lowest, ancestorDepth);
+                    continue;
+                }
+                children.add(successor);
+                childKeys.add(successorKey);
+                if (successorGame.isWon()) {
+                    continuations
+                        .add(
+                            new Continuation(
+                                successor.getTransitionString(),
+                                successorKey,
+                                null
+                            )
+                        );
+                    if (FIRST_ONLY) return DEPENDENT;
+                }
+            }
+
+            // the most recent successor is expanded first, as with a stack
+            for (int i = children.size() - 1; i >= 0; i--) {
+                State child = children.get(i);
+                Object childKey = childKeys.get(i);
+                int found = continuations.size();
+                lowest =
+                    Math.min(
+                        lowest,
+                        expandChild(child, childKey, depth + 1, continuations)
+                    );
+                for (int j = found; j < continuations.size(); j++) {
+                    Continuation continuation =
+                        new Continuation(
+                            child.getTransitionString(),
+                            childKey,
+                            continuations.get(j)
+                        );
+                    continuations.set(j, continuation);
+                }
+                if (FIRST_ONLY && !continuations.isEmpty()) return DEPENDENT;
+            }
+            return lowest;
+        }
+
+        /**
+         * Adds the winning continuations from the given child to the list,
+         * using and updating the transposition table
+         * @return the same as {@link #expand}
+         */
+        private int expandChild(
+            State child,
+            Object key,
+            int depth,
+            List<Continuation> continuations
+        ) {
+            int movesLeft = movesLeft(child.getGame(), depth);
+            Object tableKey = tableKey(child, key);
+            List<Continuation> known = TABLE.get(tableKey, movesLeft);
+            if (known != null) return reuse(known, continuations);
+            if (FIRST_ONLY && TABLE.markExpanded(tableKey, movesLeft)) {
+                return DEPENDENT;
+            }
+
+            List<Continuation> found = new ArrayList<>();
+            PATH.put(key, depth);
+            int lowest = expand(child, key, depth, found);
+            PATH.remove(key);
+            if (lowest >= depth && (!FIRST_ONLY || found.isEmpty())) {
+                TABLE.put(tableKey, movesLeft, new ArrayList<>(found));
+            }
+            continuations.addAll(found);
+            return lowest;
+        }
+
+        /**
+         * Whether the move to the successor is skipped because it commutes
+         * with the move to the state, and the other order is canonical
+         */
+        private boolean outOfOrder(State state, State successor) {
+            return COMMUTATIONS != null
+                && state.getParent() != null
+                && COMMUTATIONS
+                    .outOfOrder(
+                        state.getTransitionString(),
+                        successor.getTransitionString()
+                    );
+        }
+
+        /**
+         * @return the key of the child in the table. If moves may be skipped
+         * after the move to the child, this includes that move.
+         */
+        private Object tableKey(State child, Object key) {
+            String move = child.getTransitionString();
+            if (COMMUTATIONS == null || !COMMUTATIONS.restricts(move)) {
+                return key;
+            }
+            return Arrays.asList(key, move);
+        }
+
+        /**
+         * @return the moves left of the game at the given depth, counting the
+         * limit of the search
+         */
+        private int movesLeft(Game game, int depth) {
+            return Math.min(game.getMovesLeft(), LIMIT - depth);
+        }
+
+        /**
+         * Adds the known continuations that are valid from the current path
+         * @return the same as {@link #expand}
+         */
+        private int reuse(
+            List<Continuation> known,
+            List<Continuation> continuations
+        ) {
+            int lowest = INDEPENDENT;
+            for (Continuation continuation : known) {
+                int ancestorDepth = ancestorDepth(continuation);
+                if (ancestorDepth == INDEPENDENT) {
+                    continuations.add(continuation);
+                    if (FIRST_ONLY) return DEPENDENT;
+                } else {
+                    lowest = Math.min(lowest, ancestorDepth);
+                }
+            }
+            return lowest;
+        }
+
+        /**
+         * @return the depth of the shallowest ancestor in the path that the
+         * given continuation passes through, or INDEPENDENT if there is none
+         */
+        private int ancestorDepth(Continuation continuation) {
+            int lowest = INDEPENDENT;
+            while (continuation != null) {
+                Integer ancestorDepth = PATH.get(continuation.KEY);
+                if (ancestorDepth != null) {
+                    lowest = Math.min(lowest, ancestorDepth);
+                }
+                continuation = continuation.NEXT;
+            }
+            return lowest;
+        }
+    }
+
+    /**
+     * Iterates over the solutions of a game with a stack-based search that
+     * stops whenever a solution is found and resumes where it left off
+     */
+    private static class SolutionIterator implements Iterator<List<String>> {
+        /** The states of the current path, the deepest on top */
+        private final Deque<Frame> STACK = new ArrayDeque<>();
+        /** The keys of the states in the current path */
+        private final Set<Object> PATH = new HashSet<>();
+        /** Solutions found but not yet returned */
+        private final Deque<List<String>> FOUND = new ArrayDeque<>();
+
+        SolutionIterator(Game game) {
+            push(game.rootState(), game.transpositionKey());
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (FOUND.isEmpty() && !STACK.isEmpty()) advance();
+            return !FOUND.isEmpty();
+        }
+
+        @Override
+        public List<String> next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            return FOUND.poll();
+        }
+
+        /** Expands the next child of the deepest state, or leaves the state */
+        private void advance() {
+            Frame frame = STACK.peek();
+            if (frame.next < 0) {
+                STACK.pop();
+                PATH.remove(frame.KEY);
+                return;
+            }
+            int next = frame.next--;
+            push(frame.CHILDREN.get(next), frame.CHILD_KEYS.get(next));
+        }
+
+        /**
+         * Adds the state to the path, finding its non-redundant successors and
+         * the solutions among them
+         */
+        private void push(State state, Object key) {
+            PATH.add(key);
+            Frame frame = new Frame(key);
+            for (State successor : state.getGame().getSuccessors(state, null)) {
+                Game successorGame = successor.getGame();
+                Object successorKey = successorGame.transpositionKey();
+                if (PATH.contains(successorKey)) continue; // redundant
+                frame.CHILDREN.add(successor);
+                frame.CHILD_KEYS.add(successorKey);
+                if (successorGame.isWon()) FOUND.add(solutionFrom(successor));
+            }
+            // the most recent successor is expanded first, as with a stack
+            frame.next = frame.CHILDREN.size() - 1;
+            STACK.push(frame);
+        }
+
+        /** A state of the current path and the children left to expand */
+        private static class Frame {
+            private final Object KEY;
+            private final List<State> CHILDREN = new ArrayList<>();
+            private final List<Object> CHILD_KEYS = new ArrayList<>();
+            /** The index of the next child to expand, -1 if none are left */
+            private int next;
+
+            Frame(Object key) {
+                KEY = key;
+            }
+        }
+    }
 }
@@ -65,7 +65,7 @@ public class State {
      * @return all non-redundant successor states
      */
     public List<State> getSuccessors() {
-        List<State> successors = GAME.getSuccessors(this);
+        List<State> successors = GAME.getSuccessors(this, null);
         for (int i = 0; i < successors.size(); i++) {
             State potentialSuccessor = successors.get(i);
             if (redundant(potentialSuccessor.getGame())) {
@@ -0,0 +1,114 @@
+package com.mathwithmark.calculatorgamesolver.brutesolver;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Remembers what the solver has learned about game states, so that a state
+ * reached through different move orders is not expanded again.
+ *
+ * Results are keyed on a game's transposition key and the number of moves left.
+ * A result is either "known dead" (no solution within those moves) or a "known
+ * solution subtree" (every continuation from the state that wins). The table
+ * also records which games were already expanded during a first-solution
+ * search.
+ *
+ * The table holds at most a fixed number of cells. Each result or expanded game
+ * takes one cell, plus one per stored continuation. Once the table is full,
+ * new information is dropped, which only costs speed, never correctness.
+ */
+public class TranspositionTable {
+    /** The default maximum number of cells in a table */
+    public static final int DEFAULT_CAPACITY = 1 << 20;
+
+    /** The maximum number of cells in this table */
+    private final int CAPACITY;
+
+    /** The number of cells currently in use */
+    private int size = 0;
+
+    /** Known results, keyed on transposition key and moves left */
+    private final Map<ResultKey, List<Continuation>> RESULTS = new HashMap<>();
+
+    /** The most moves left with which each game has been expanded */
+    private final Map<Object, Integer> EXPANDED = new HashMap<>();
+
+    /** Creates a table with the default capacity */
+    public TranspositionTable() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a table that holds at most the given number of cells
+     * @param capacity the maximum number of cells, at least 0
+     * @throws IllegalArgumentException if the capacity is negative
+     */
+    public TranspositionTable(int capacity) throws IllegalArgumentException {
+        if (capacity < 0) {
+            throw new IllegalArgumentException(
+                "Capacity must be at least 0, was " + capacity
+            );
+        }
+        CAPACITY = capacity;
+    }
+
+    /** @return the number of cells currently in use */
+    public int size() {
+        return size;
+    }
+
+    /** @return the maximum number of cells in this table */
+    public int capacity() {
+        return CAPACITY;
+    }
+
+    /**
+     * @return the winning continuations from the game with the given key and
+     * moves left, an empty list if the game is known dead, or null if nothing
+     * is known about it
+     */
+    List<Continuation> get(Object key, int movesLeft) {
+        return RESULTS.get(new ResultKey(key, movesLeft));
+    }
+
+    /**
+     * Stores the winning continuations from the game with the given key and
+     * moves left. An empty list marks the game as dead. The continuations must
+     * not depend on the ancestors of the game.
+     */
+    void put(Object key, int movesLeft, List<Continuation> continuations) {
+        int cells = 1 + continuations.size();
+        if (size + cells > CAPACITY) return;
+        if (RESULTS.put(new ResultKey(key, movesLeft), continuations) == null) {
+            size += cells;
+        }
+    }
+
+    /**
+     * Records that the game with the given key is expanded with the given moves
+     * left
+     * @return true iff the game was already expanded with at least as many
+     * moves left
+     */
+    boolean markExpanded(Object key, int movesLeft) {
+        Integer expanded = EXPANDED.get(key);
+        if (expanded != null && expanded >= movesLeft) return true;
+        if (expanded != null) {
+            EXPANDED.put(key, movesLeft);
+        } else if (size < CAPACITY) {
+            EXPANDED.put(key, movesLeft);
+            size++;
+        }
+        return false;
+    }
+
+    /**
+     * Forgets which games were expanded. Expanded games only describe a single
+     * search, while results stay valid for any search of the same game.
+     */
+    void clearExpanded() {
+        size -= EXPANDED.size();
+        EXPANDED.clear();
+    }
+}
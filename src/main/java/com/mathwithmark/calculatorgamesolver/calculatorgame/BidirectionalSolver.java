@@ -0,0 +1,292 @@
+package com.mathwithmark.calculatorgamesolver.calculatorgame;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import com.mathwithmark.calculatorgamesolver.brutesolver.Solver;
+
+/**
+ * Finds a shortest solution to a CalculatorGame by searching breadth-first
+ * forward from the start value and backward from the goal at the same time,
+ * until the two searches meet. Each search only has to go about half as deep
+ * as a forward search would.
+ *
+ * Searching backward needs every rule to be undone, so levels with portals,
+ * Meta Add, Store, or a rule that can't be undone, such as Sum or Convert,
+ * fall back to searching forward only. {@link #getFallbackReason()} says why.
+ */
+public class BidirectionalSolver {
+    /** The game to solve, only used if the level can't be packed */
+    private final CalculatorGame GAME;
+    /** The packed level, or null if the game can't be packed */
+    private final PackedLevel LEVEL;
+    /** Why the search is forward only, or null if it is bidirectional */
+    private final String FALLBACK_REASON;
+
+    /**
+     * Prepares to solve the given game, deciding whether it can be searched
+     * from both ends
+     */
+    public BidirectionalSolver(CalculatorGame game) {
+        GAME = game;
+        if (PackedLevel.supports(game)) {
+            LEVEL = new PackedLevel(game);
+            FALLBACK_REASON = fallbackReason(LEVEL);
+        } else {
+            LEVEL = null;
+            FALLBACK_REASON = "Not packable";
+        }
+    }
+
+    /** @return why the level can't be searched backward, or null if it can */
+    private static String fallbackReason(PackedLevel level) {
+        if (level.hasPortals()) return "Portals";
+        if (!level.changesOnlyValue()) return "Meta Add or Store";
+        for (int rule = 0; rule < level.numRules(); rule++) {
+            String reason = level.notInvertibleReason(rule);
+            if (reason != null) return reason;
+        }
+        return null;
+    }
+
+    /** Whether the game is searched from both ends */
+    public boolean isBidirectional() {
+        return FALLBACK_REASON == null;
+    }
+
+    /**
+     * @return why the game is only searched forward, or null if it is searched
+     * from both ends
+     */
+    public String getFallbackReason() {
+        return FALLBACK_REASON;
+    }
+
+    /**
+     * Finds a solution with as few moves as possible. Its length is the same as
+     * the length of the shortest solution from
+     * {@link Solver#getAllSolutions}.
+     * @return a list of transition strings, or null if the game is unsolveable
+     */
+    public List<String> getShortestSolution() {
+        if (LEVEL == null) return shortestOf(Solver.getAllSolutions(GAME));
+        return new Search(LEVEL, isBidirectional()).run();
+    }
+
+    /** @return the shortest of the solutions, or null if there are none */
+    private static List<String> shortestOf(List<List<String>> solutions) {
+        List<String> shortest = null;
+        for (List<String> solution : solutions) {
+            if (shortest == null || solution.size() < shortest.size()) {
+                shortest = solution;
+            }
+        }
+        return shortest;
+    }
+
+    /** A single bidirectional search, see {@link #getShortestSolution()} */
+    private static class Search {
+        private final PackedLevel LEVEL;
+        private final boolean BIDIRECTIONAL;
+        private final int MOVES;
+        private final long ROOT;
+
+        /** The forward side, whose nodes are packed states */
+        private final Side FORWARD = new Side();
+        /**
+         * The backward side, whose nodes are values, each one rule away from
+         * its parent's value. If not searching backward, just the goal.
+         */
+        private final Side BACKWARD = new Side();
+        /** Buffer for {@link PackedLevel#previousValues} */
+        private final int[] PREVIOUS;
+
+        /** The nodes of the best meeting found so far, -1 if none */
+        private int bestForward = -1, bestBackward = -1;
+
+        Search(PackedLevel level, boolean bidirectional) {
+            LEVEL = level;
+            BIDIRECTIONAL = bidirectional;
+            ROOT = level.root();
+            MOVES = PackedLevel.movesLeft(ROOT);
+            PREVIOUS =
+                bidirectional ? new int[level.maxPreviousValues()] : null;
+        }
+
+        List<String> run() {
+            int goal = LEVEL.goal();
+            if (BIDIRECTIONAL && PackedLevel.value(ROOT) == goal) {
+                // Every solution would return to the start, a repeated state
+                return null;
+            }
+            FORWARD.add(forwardKey(ROOT), ROOT, -1, -1);
+            FORWARD.endLayer();
+            BACKWARD.add(goal, goal, -1, -1);
+            BACKWARD.endLayer();
+            while (FORWARD.depth + BACKWARD.depth < MOVES) {
+                boolean forward = !BIDIRECTIONAL
+                    || FORWARD.layerSize() <= BACKWARD.layerSize();
+                if (forward) {
+                    expandForward();
+                    if (FORWARD.layerSize() == 0) return null;
+                } else {
+                    expandBackward();
+                    if (BACKWARD.layerSize() == 0) return null;
+                }
+                if (bestForward >= 0) return solution();
+            }
+            return null;
+        }
+
+        /** Expands every state of the last forward layer by one rule */
+        private void expandForward() {
+            int start = FORWARD.layerStart, end = FORWARD.size;
+            for (int node = start; node < end; node++) {
+                long state = FORWARD.STATES[node];
+                for (int rule = 0; rule < LEVEL.numRules(); rule++) {
+                    long successor = LEVEL.apply(state, rule);
+                    if (successor == PackedLevel.INVALID) continue;
+                    long key = forwardKey(successor);
+                    int child = FORWARD.add(key, successor, node, rule);
+                    if (child >= 0) {
+                        meet(child, BACKWARD.get(meetKey(successor)));
+                    }
+                }
+            }
+            FORWARD.endLayer();
+        }
+
+        /** Finds every value one rule before the last backward layer */
+        private void expandBackward() {
+            int start = BACKWARD.layerStart, end = BACKWARD.size;
+            for (int node = start; node < end; node++) {
+                int value = (int) BACKWARD.STATES[node];
+                for (int rule = 0; rule < LEVEL.numRules(); rule++) {
+                    int count = LEVEL.previousValues(value, rule, PREVIOUS);
+                    for (int i = 0; i < count; i++) {
+                        int previous = PREVIOUS[i];
+                        int child =
+                            BACKWARD.add(previous, previous, node, rule);
+                        if (child >= 0) {
+                            meet(FORWARD.get(previous), child);
+                        }
+                    }
+                }
+            }
+            BACKWARD.endLayer();
+        }
+
+        /**
+         * The key of a forward state. When searching backward, every state of
+         * the level is described by its value alone.
+         */
+        private long forwardKey(long state) {
+            if (BIDIRECTIONAL) return PackedLevel.value(state);
+            return PackedLevel.roughKey(state);
+        }
+
+        /** The key to find a forward state among the backward nodes */
+        private static long meetKey(long state) {
+            return PackedLevel.value(state);
+        }
+
+        /**
+         * Records the meeting of the two nodes if it makes a shorter solution
+         * than any so far. Does nothing if either node is -1.
+         */
+        private void meet(int forwardNode, int backwardNode) {
+            if (forwardNode < 0 || backwardNode < 0) return;
+            int length =
+                FORWARD.DEPTHS[forwardNode] + BACKWARD.DEPTHS[backwardNode];
+            if (length == 0 || length > MOVES) return;
+            if (
+                bestForward < 0
+                    || length < FORWARD.DEPTHS[bestForward]
+                        + BACKWARD.DEPTHS[bestBackward]
+            ) {
+                bestForward = forwardNode;
+                bestBackward = backwardNode;
+            }
+        }
+
+        /** @return the transition strings of the best meeting */
+        private List<String> solution() {
+            List<String> transitionStrings = new ArrayList<>();
+            for (
+                int node = bestForward;
+                FORWARD.PARENTS[node] >= 0;
+                node = FORWARD.PARENTS[node]
+            ) {
+                long parent = FORWARD.STATES[FORWARD.PARENTS[node]];
+                transitionStrings
+                    .add(LEVEL.transitionString(parent, FORWARD.RULES[node]));
+            }
+            Collections.reverse(transitionStrings);
+            for (
+                int node = bestBackward;
+                BACKWARD.PARENTS[node] >= 0;
+                node = BACKWARD.PARENTS[node]
+            ) {
+                transitionStrings
+                    .add(LEVEL.transitionString(ROOT, BACKWARD.RULES[node]));
+            }
+            return transitionStrings;
+        }
+    }
+
+    /**
+     * The nodes one side of a search has found, in the order found, with the
+     * depth of the last complete layer
+     */
+    private static class Side {
+        private final LongIntMap NODES = new LongIntMap();
+        private long[] STATES = new long[16];
+        private int[] PARENTS = new int[16];
+        private int[] RULES = new int[16];
+        private int[] DEPTHS = new int[16];
+        private int size = 0;
+        /** The first node of the last complete layer */
+        private int layerStart = 0;
+        /** The first node of the layer being found */
+        private int nextLayerStart = 0;
+        /** The depth of the last complete layer, -1 before the first */
+        private int depth = -1;
+
+        /**
+         * Adds a node unless one with the same key was already found
+         * @return the index of the new node, or -1 if it was already found
+         */
+        int add(long key, long state, int parent, int rule) {
+            if (!NODES.putIfAbsent(key, size)) return -1;
+            if (size == STATES.length) {
+                STATES = Arrays.copyOf(STATES, size * 2);
+                PARENTS = Arrays.copyOf(PARENTS, size * 2);
+                RULES = Arrays.copyOf(RULES, size * 2);
+                DEPTHS = Arrays.copyOf(DEPTHS, size * 2);
+            }
+            STATES[size] = state;
+            PARENTS[size] = parent;
+            RULES[size] = rule;
+            DEPTHS[size] = depth + 1;
+            return size++;
+        }
+
+        /** @return the index of the node with the key, or -1 if none */
+        int get(long key) {
+            return NODES.get(key);
+        }
+
+        /** Marks every node added since the last call as a complete layer */
+        void endLayer() {
+            layerStart = nextLayerStart;
+            nextLayerStart = size;
+            depth++;
+        }
+
+        int layerSize() {
+            return size - layerStart;
+        }
+    }
+}
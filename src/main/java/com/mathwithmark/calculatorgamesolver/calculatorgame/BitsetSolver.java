@@ -0,0 +1,186 @@
+package com.mathwithmark.calculatorgamesolver.calculatorgame;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.mathwithmark.calculatorgamesolver.brutesolver.Solver;
+
+/**
+ * Finds a shortest solution to a CalculatorGame by searching breadth-first
+ * over every value at once. Each layer of the search is a bitset with one bit
+ * per value from -999,999 to 999,999, set for the values first reached after
+ * that many moves. A layer takes about 250 KB, and nothing else is kept per
+ * value.
+ *
+ * Each value is expanded at most once, so the search takes time proportional
+ * to the number of values and moves, however many moves the level has. A
+ * solution is recovered by walking back from the goal through the layers.
+ *
+ * Only levels whose rules just change the value can be searched this way,
+ * see {@link #supports(CalculatorGame)}.
+ */
+public class BitsetSolver {
+    private static final int NUM_VALUES = 2 * PackedLevel.MAX_VALUE + 1;
+    private static final int NUM_WORDS = (NUM_VALUES + 63) / 64;
+
+    private final PackedLevel LEVEL;
+
+    /** The values first reached after each number of moves, by depth */
+    private final List<Layer> LAYERS = new ArrayList<>();
+
+    /** The depth of the goal, or -1 if not yet searched or not reachable */
+    private int goalDepth = -1;
+    private boolean searched = false;
+
+    /**
+     * Prepares to solve the given game
+     * @throws IllegalArgumentException if the game isn't supported, see
+     * {@link #supports(CalculatorGame)}
+     */
+    public BitsetSolver(CalculatorGame game) throws IllegalArgumentException {
+        if (!supports(game)) {
+            throw new IllegalArgumentException(
+                "Only levels that change just the value are supported"
+            );
+        }
+        LEVEL = new PackedLevel(game);
+    }
+
+    /**
+     * Whether the given game can be solved by a BitsetSolver. Games with Meta
+     * Add or Store rules can't be, nor games that can't be packed, see
+     * {@link PackedSolver#supports(CalculatorGame)}.
+     */
+    public static boolean supports(CalculatorGame game) {
+        return PackedLevel.supports(game)
+            && new PackedLevel(game).changesOnlyValue();
+    }
+
+    /**
+     * @return the fewest moves that win the game, the same as the length of
+     * the shortest solution from {@link Solver#getAllSolutions}, or -1 if the
+     * game is unsolveable
+     */
+    public int getShortestLength() {
+        search();
+        return goalDepth;
+    }
+
+    /**
+     * Finds a solution with as few moves as possible
+     * @return a list of transition strings, or null if the game is unsolveable
+     */
+    public List<String> getShortestSolution() {
+        search();
+        if (goalDepth < 0) return null;
+        List<String> transitionStrings = new ArrayList<>();
+        int value = LEVEL.goal();
+        for (int depth = goalDepth; depth > 0; depth--) {
+            int[] move = previousMove(depth - 1, value);
+            transitionStrings
+                .add(LEVEL.transitionString(LEVEL.root(), move[1]));
+            value = move[0];
+        }
+        Collections.reverse(transitionStrings);
+        return transitionStrings;
+    }
+
+    /**
+     * Fills the layers until the goal is found, there are no new values, or
+     * there are no moves left
+     */
+    private void search() {
+        if (searched) return;
+        searched = true;
+        int start = PackedLevel.value(LEVEL.root());
+        int goal = LEVEL.goal();
+        // Every solution would return to the start, a repeated state
+        if (start == goal) return;
+
+        int moves = PackedLevel.movesLeft(LEVEL.root());
+        Layer visited = new Layer();
+        Layer layer = new Layer();
+        layer.set(start);
+        visited.set(start);
+        LAYERS.add(layer);
+        for (int depth = 1; depth <= moves; depth++) {
+            Layer next = new Layer();
+            for (int word = layer.low; word <= layer.high; word++) {
+                long bits = layer.BITS[word];
+                for (; bits != 0; bits &= bits - 1) {
+                    int value = value(word, bits);
+                    for (int rule = 0; rule < LEVEL.numRules(); rule++) {
+                        int successor = LEVEL.nextValue(value, rule);
+                        if (successor == PackedLevel.INVALID_VALUE) continue;
+                        if (visited.get(successor)) continue;
+                        visited.set(successor);
+                        next.set(successor);
+                    }
+                }
+            }
+            if (next.isEmpty()) return;
+            LAYERS.add(next);
+            if (next.get(goal)) {
+                goalDepth = depth;
+                return;
+            }
+            layer = next;
+        }
+    }
+
+    /**
+     * @return the lowest value in the given layer and the first rule that
+     * takes it to the given value, as {value, rule}
+     */
+    private int[] previousMove(int depth, int value) {
+        Layer layer = LAYERS.get(depth);
+        for (int word = layer.low; word <= layer.high; word++) {
+            long bits = layer.BITS[word];
+            for (; bits != 0; bits &= bits - 1) {
+                int previous = value(word, bits);
+                for (int rule = 0; rule < LEVEL.numRules(); rule++) {
+                    if (LEVEL.nextValue(previous, rule) == value) {
+                        return new int[] {
+                            previous, rule
+                        };
+                    }
+                }
+            }
+        }
+        throw new IllegalStateException("No move to " + value);
+    }
+
+    /** @return the value of the lowest set bit in the given word */
+    private static int value(int word, long bits) {
+        int index = word * 64 + Long.numberOfTrailingZeros(bits);
+        return index - PackedLevel.MAX_VALUE;
+    }
+
+    /**
+     * A set of values as a bitset, with the range of words that may have bits
+     * set, so that sparse layers are read quickly
+     */
+    private static class Layer {
+        final long[] BITS = new long[NUM_WORDS];
+        /** The lowest and highest words with bits set, high < low if none */
+        int low = NUM_WORDS, high = -1;
+
+        boolean get(int value) {
+            int index = value + PackedLevel.MAX_VALUE;
+            return (BITS[index >>> 6] & (1L << index)) != 0;
+        }
+
+        void set(int value) {
+            int index = value + PackedLevel.MAX_VALUE;
+            int word = index >>> 6;
+            BITS[word] |= 1L << index;
+            low = Math.min(low, word);
+            high = Math.max(high, word);
+        }
+
+        boolean isEmpty() {
+            return high < low;
+        }
+    }
+}
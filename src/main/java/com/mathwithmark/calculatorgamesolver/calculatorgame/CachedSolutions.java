@@ -0,0 +1,15 @@
+package com.mathwithmark.calculatorgamesolver.calculatorgame;
+
+import java.util.List;
+
+/** The solutions to a level, in search order for its order of rules */
+class CachedSolutions {
+    /** The transition strings of the rules of the level, in order */
+    final List<String> RULE_ORDER;
+    final List<List<String>> SOLUTIONS;
+
+    CachedSolutions(List<String> ruleOrder, List<List<String>> solutions) {
+        RULE_ORDER = ruleOrder;
+        SOLUTIONS = solutions;
+    }
+}
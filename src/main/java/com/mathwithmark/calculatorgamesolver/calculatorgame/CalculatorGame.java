@@ -1,13 +1,18 @@
 package com.mathwithmark.calculatorgamesolver.calculatorgame;
 
 import java.io.StringWriter;
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.WeakHashMap;
 
+import com.mathwithmark.calculatorgamesolver.brutesolver.CommutationTable;
 import com.mathwithmark.calculatorgamesolver.brutesolver.Game;
+import com.mathwithmark.calculatorgamesolver.brutesolver.Pruning;
 import com.mathwithmark.calculatorgamesolver.brutesolver.State;
 import com.mathwithmark.calculatorgamesolver.yaml.Mappable;
 
@@ -24,10 +29,26 @@ public class CalculatorGame implements Game, Mappable {
     private final int MOVES_LEFT;
 
     /**
-     * The rules that can be used in this game.
+     * The rules of the level, before any Meta Add or Store update. The rules
+     * that can be used in this game are these after {@link #OFFSET} and the
+     * stored value, see {@link #rule(int)}. Shared with every successor.
      */
     private final Rule[] RULES;
 
+    /**
+     * The sum of the operands of the Meta Add rules applied so far, added to
+     * the operand of every rule that Meta Add changes. Always 0 if no rule's
+     * operand changes with Meta Add.
+     */
+    private final int OFFSET;
+
+    /**
+     * Whether the Store rule holds a value, and the value it holds. False and
+     * 0 if there is no Store rule.
+     */
+    private final boolean STORED;
+    private final int STORE;
+
     /**
      * The portals present on this game. `null` indicates no portals.
      * If portals is not null, it is 2 elements, the first greater than the
@@ -38,6 +59,22 @@ public class CalculatorGame implements Game, Mappable {
      */
     private final int[] PORTALS;
 
+    /** How the rules and portals hash, shared with every successor */
+    private final RulesHash LEVEL_HASH;
+
+    /** The hash of the rules and portals, see {@link RulesHash} */
+    private final int RULES_HASH;
+
+    /** The hash of everything but the moves left, see {@link GameKey} */
+    private final int HASH_EXCEPT_MOVES;
+
+    /**
+     * The games made canonical by {@link #intern()}. The games are only
+     * weakly held, so a game no longer used elsewhere is dropped.
+     */
+    private static final Map<CalculatorGame, WeakReference<CalculatorGame>>
+        INTERNED = Collections.synchronizedMap(new WeakHashMap<>());
+
     /**
      * Create a level of the given parameters
      *
@@ -64,7 +101,96 @@ public class CalculatorGame implements Game, Mappable {
         this.GOAL = goal;
         this.MOVES_LEFT = moves;
         this.RULES = sanitize(rules);
+        this.OFFSET = 0;
+        StoreRule storeRule = storeRule(RULES);
+        this.STORED = storeRule != null && storeRule.INITIALIZED;
+        this.STORE = STORED ? storeRule.getOperand() : 0;
         this.PORTALS = portals;
+        this.LEVEL_HASH = new RulesHash(RULES, PORTALS);
+        this.RULES_HASH = LEVEL_HASH.of(OFFSET, STORED, STORE);
+        this.HASH_EXCEPT_MOVES = GameKey.hash(VALUE, GOAL, RULES_HASH);
+    }
+
+    /**
+     * Makes a successor of the given game, with one move fewer. Nothing is
+     * validated: the value must have at most {@link Config#MAX_DIGITS} digits.
+     * @param sameRules whether the rules are the same as the parent's, so
+     * their hash is too
+     */
+    private CalculatorGame(
+        CalculatorGame parent,
+        int value,
+        int offset,
+        boolean stored,
+        int store,
+        boolean sameRules
+    ) {
+        this.VALUE = applyPortals(parent.PORTALS, value);
+        this.GOAL = parent.GOAL;
+        this.MOVES_LEFT = parent.MOVES_LEFT - 1;
+        this.RULES = parent.RULES;
+        this.OFFSET = offset;
+        this.STORED = stored;
+        this.STORE = store;
+        this.PORTALS = parent.PORTALS;
+        this.LEVEL_HASH = parent.LEVEL_HASH;
+        this.RULES_HASH =
+            sameRules
+                ? parent.RULES_HASH
+                : LEVEL_HASH.of(OFFSET, STORED, STORE);
+        this.HASH_EXCEPT_MOVES = GameKey.hash(VALUE, GOAL, RULES_HASH);
+    }
+
+    /**
+     * Makes the game after a move that only changes the value, sharing the
+     * rules and portals of this game instead of validating them again
+     * @param value the value before portals, which may be out of range
+     * @return the successor, or null if the value has too many digits or
+     * there are no moves left
+     */
+    CalculatorGame successor(long value) {
+        if (!isValidSuccessor(value)) return null;
+        return new CalculatorGame(
+            this,
+            (int) value,
+            OFFSET,
+            STORED,
+            STORE,
+            true
+        );
+    }
+
+    /**
+     * Makes the game after a Meta Add, which adds its operand to the operands
+     * of the other rules and resets the Store rule
+     * @return the successor, or null if there are no moves left
+     */
+    CalculatorGame metaAddSuccessor(int operand) {
+        if (!isValidSuccessor(VALUE)) return null;
+        int offset = tracksOffset(RULES) ? OFFSET + operand : 0;
+        return new CalculatorGame(this, VALUE, offset, false, 0, false);
+    }
+
+    /**
+     * Makes the game after an Update Store, which stores the value in the
+     * Store rule
+     * @return the successor, or null if there are no moves left
+     */
+    CalculatorGame storeSuccessor() {
+        if (!isValidSuccessor(VALUE)) return null;
+        return new CalculatorGame(this, VALUE, OFFSET, true, VALUE, false);
+    }
+
+    /**
+     * Whether a successor with the given value would be valid, the same as
+     * the constructor checks but without throwing
+     */
+    private boolean isValidSuccessor(long value) {
+        if (MOVES_LEFT == 0) return false;
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            return false;
+        }
+        return Helpers.numDigits((int) value) <= Config.MAX_DIGITS;
     }
 
     /**
@@ -86,6 +212,61 @@ public class CalculatorGame implements Game, Mappable {
         return newRules.toArray(new Rule[0]);
     }
 
+    /** @return the Store rule of the rules, or null if there is none */
+    private static StoreRule storeRule(Rule[] rules) {
+        for (Rule rule : rules) {
+            if (rule instanceof StoreRule) return (StoreRule) rule;
+        }
+        return null;
+    }
+
+    /** Whether any of the rules has an operand that changes with Meta Add */
+    private static boolean tracksOffset(Rule[] rules) {
+        for (Rule rule : rules) {
+            if (changesWithMetaAdd(rule)) return true;
+        }
+        return false;
+    }
+
+    /** Whether Meta Add adds to the operand of the rule */
+    private static boolean changesWithMetaAdd(Rule rule) {
+        return rule instanceof OneRule
+            && rule.getOperator() != Rule.META_ADD
+            && rule.getOperator() != Rule.STORE;
+    }
+
+    /**
+     * @return the rule with the given index that can be used in this game,
+     * after any Meta Add and Store update
+     */
+    private Rule rule(int index) {
+        Rule rule = RULES[index];
+        if (rule.getOperator() == Rule.STORE) {
+            return STORED ? Rule.stored(STORE) : Rule.of(Rule.STORE);
+        }
+        if (OFFSET != 0 && changesWithMetaAdd(rule)) {
+            int operand = ((OneRule) rule).getOperand() + OFFSET;
+            return Rule.of(rule.getOperator(), operand);
+        }
+        return rule;
+    }
+
+    /**
+     * @return the rules that can be used in this game, which are RULES
+     * themselves unless a Meta Add or Store update changed one. Must not be
+     * modified.
+     */
+    private Rule[] rules() {
+        Rule[] rules = RULES;
+        for (int i = 0; i < RULES.length; i++) {
+            Rule rule = rule(i);
+            if (rule == RULES[i]) continue;
+            if (rules == RULES) rules = Arrays.copyOf(RULES, RULES.length);
+            rules[i] = rule;
+        }
+        return rules;
+    }
+
     public int getValue() {
         return VALUE;
     }
@@ -94,17 +275,19 @@ public class CalculatorGame implements Game, Mappable {
         return GOAL;
     }
 
+    @Override
     public int getMovesLeft() {
         return MOVES_LEFT;
     }
 
     public boolean isValidRule(Rule rule) {
-        return Arrays.asList(RULES).contains(rule);
+        return Arrays.asList(rules()).contains(rule);
     }
 
     /** The valid rules for this game */
     public Rule[] getRules() {
-        return Arrays.copyOf(RULES, RULES.length);
+        Rule[] rules = rules();
+        return rules == RULES ? Arrays.copyOf(RULES, RULES.length) : rules;
     }
 
     public int[] getPortals() {
@@ -116,44 +299,36 @@ public class CalculatorGame implements Game, Mappable {
      * Make the digits of value "fall through" the portals
      * @param portals null or a two-element array where the first element is
      * greater than the second AND the second is at least 0
-     * @param value the value before the digits fall through the portals
+     * @param value the value before the digits fall through the portals, with
+     * at most {@link Config#MAX_DIGITS} digits
      * @return the value after the digits fall through the portals (the same
      * value if portals == null)
      */
     private static int applyPortals(int[] portals, int value) {
         if (portals == null) return value;
+        // Integer.MIN_VALUE has no absolute value, so no digits fall
+        if (value == Integer.MIN_VALUE) return value;
+        PortalTable table = PortalTable.of(portals[0], portals[1]);
+        return table == null ? value : table.apply(value);
+    }
 
-        boolean negative = value < 0;
-        value = Math.abs(value); // only worry about the positive version
-
-        int leftPortalIndex = portals[0];
-        int rightPortalIndex = portals[1];
-
-        while (value >= Math.pow(10, leftPortalIndex)) {
-            // Have the digit fall
-            int digit = Helpers.getDigit(value, leftPortalIndex);
-            value -= digit * Math.pow(10, leftPortalIndex);
-            value += digit * Math.pow(10, rightPortalIndex);
-
-            // Take digits at left of portal and shift them one right
-            int valueLeft = Helpers.digitsToTheLeft(value, leftPortalIndex);
-            value -= valueLeft * Math.pow(10, leftPortalIndex + 1);
-            value += valueLeft * Math.pow(10, leftPortalIndex);
-        }
+    @Override
+    public boolean equals(Object other) {
+        if (other == this) return true;
+        if (!(other instanceof CalculatorGame)) return false;
+        CalculatorGame otherGame = (CalculatorGame) other;
+        return otherGame.MOVES_LEFT == MOVES_LEFT
+            && equalsExceptMoves(otherGame);
+    }
 
-        return negative ? -value : value;
+    @Override
+    public int hashCode() {
+        return 31 * HASH_EXCEPT_MOVES + MOVES_LEFT;
     }
 
-    public boolean equals(Object other) {
-        if (other instanceof CalculatorGame) {
-            CalculatorGame otherGame = (CalculatorGame) other;
-            return otherGame.getValue() == getValue()
-                && otherGame.getGoal() == getGoal()
-                && otherGame.getMovesLeft() == getMovesLeft()
-                && Arrays.equals(otherGame.getRules(), getRules())
-                && Arrays.equals(otherGame.getPortals(), getPortals());
-        } else
-            return false;
+    /** @return a hash consistent with {@link #equalsExceptMoves} */
+    int hashCodeExceptMoves() {
+        return HASH_EXCEPT_MOVES;
     }
 
     /**
@@ -164,15 +339,35 @@ public class CalculatorGame implements Game, Mappable {
      * Returns true if the two games are equal.
      */
     public boolean equalsExceptMoves(CalculatorGame other) {
-        CalculatorGame newOther =
-            new CalculatorGame(
-                other.getValue(),
-                other.getGoal(),
-                getMovesLeft(),
-                other.getRules(),
-                other.getPortals()
-            );
-        return equals(newOther);
+        boolean equal =
+            other.HASH_EXCEPT_MOVES == HASH_EXCEPT_MOVES
+                && other.VALUE == VALUE
+                && other.GOAL == GOAL
+                && Arrays.equals(other.PORTALS, PORTALS);
+        if (!equal) return false;
+        // Games of the same level have the same rules iff the same state
+        if (other.RULES == RULES) {
+            return other.OFFSET == OFFSET
+                && other.STORED == STORED
+                && other.STORE == STORE;
+        }
+        return Arrays.equals(other.rules(), rules());
+    }
+
+    /**
+     * Returns the canonical game equal to this one: the first equal game
+     * interned that is still in use, or this if there is none. Searches that
+     * make the same game many times can intern them to keep only one.
+     */
+    public CalculatorGame intern() {
+        synchronized (INTERNED) {
+            WeakReference<CalculatorGame> reference = INTERNED.get(this);
+            CalculatorGame interned =
+                reference == null ? null : reference.get();
+            if (interned != null) return interned;
+            INTERNED.put(this, new WeakReference<>(this));
+            return this;
+        }
     }
 
     public boolean hasPortals() {
@@ -190,16 +385,82 @@ public class CalculatorGame implements Game, Mappable {
     public List<State> getSuccessors(State parent) {
         List<State> successors = new ArrayList<>();
         for (Rule rule : getRules()) {
-            CalculatorGame successorGame = getSuccessor(rule);
-            if (successorGame == null) continue;
-            String transitionString = CalculatorGame.transitionString(rule);
-            State successorState =
-                new State(successorGame, parent, transitionString);
-            successors.add(successorState);
+            State successorState = successorState(parent, rule);
+            if (successorState != null) successors.add(successorState);
+        }
+        return successors;
+    }
+
+    /**
+     * Get the successors of this as a list of States, leaving out those that
+     * {@link RuleAlgebra} knows are redundant: rules that change nothing, and
+     * rules that undo the rule used to reach this.
+     *
+     * @param parent a state whose game is equal to this.
+     * @param pruning records the successors left out, or null
+     */
+    @Override
+    public List<State> getSuccessors(State parent, Pruning pruning) {
+        List<State> successors = new ArrayList<>();
+        if (MOVES_LEFT == 0) return successors;
+        State grandparent = parent.getParent();
+        Rule previous = previousRule(parent);
+        for (int i = 0; i < RULES.length; i++) {
+            Rule rule = rule(i);
+            if (RuleAlgebra.isNoOp(rule, VALUE, STORED, STORE)) {
+                if (pruning != null) pruning.record(transitionString(rule), 0);
+                continue;
+            }
+            if (
+                previous != null
+                    && RuleAlgebra
+                        .undoes(
+                            rule,
+                            previous,
+                            VALUE,
+                            ((CalculatorGame) grandparent.getGame()).VALUE,
+                            hasPortals()
+                        )
+            ) {
+                if (pruning != null) pruning.record(transitionString(rule), 1);
+                continue;
+            }
+            State successorState = successorState(parent, rule);
+            if (successorState != null) successors.add(successorState);
         }
         return successors;
     }
 
+    /**
+     * @return the rule that made the game of the given state from the game of
+     * its parent, or null if it has no parent or isn't from a CalculatorGame
+     */
+    private static Rule previousRule(State state) {
+        State parent = state.getParent();
+        if (parent == null || !(parent.getGame() instanceof CalculatorGame)) {
+            return null;
+        }
+        CalculatorGame parentGame = (CalculatorGame) parent.getGame();
+        for (int i = 0; i < parentGame.RULES.length; i++) {
+            Rule rule = parentGame.rule(i);
+            if (transitionString(rule).equals(state.getTransitionString())) {
+                return rule;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the state made by applying the rule to this, or null if the
+     * successor would be invalid
+     */
+    private State successorState(State parent, Rule rule) {
+        CalculatorGame successorGame = getSuccessor(rule);
+        if (successorGame == null) return null;
+        String transitionString = CalculatorGame.transitionString(rule);
+        return new State(successorGame, parent, transitionString);
+    }
+
     /**
      * Generates a successor game
      * @param rule the rule to apply
@@ -217,7 +478,7 @@ public class CalculatorGame implements Game, Mappable {
      * @return the string representing the use of the rule
      */
     public static String transitionString(Rule rule) {
-        return rule.toString();
+        return rule.cachedString();
     }
 
     /**
@@ -246,6 +507,34 @@ public class CalculatorGame implements Game, Mappable {
             && equalsExceptMoves((CalculatorGame) other);
     }
 
+    @Override
+    public Object transpositionKey() {
+        return new GameKey(this);
+    }
+
+    /**
+     * Finds which rules commute. Meta Add changes the other rules, so no rules
+     * of a level with Meta Add are known to commute.
+     */
+    @Override
+    public CommutationTable commutationTable() {
+        List<String> moves = new ArrayList<>();
+        Rule[] rules = rules();
+        for (Rule rule : rules) {
+            if (rule.getOperator() == Rule.META_ADD) return null;
+            moves.add(transitionString(rule));
+        }
+        CommutationTable table = new CommutationTable(moves);
+        for (int i = 0; i < rules.length; i++) {
+            for (int j = i + 1; j < rules.length; j++) {
+                if (RuleAlgebra.commute(rules[i], rules[j], hasPortals())) {
+                    table.setCommutes(i, j);
+                }
+            }
+        }
+        return table;
+    }
+
     @Override
     public Map<String, Object> toMap() {
         return MappableUtils.gameToMap(this);
@@ -259,8 +548,89 @@ public class CalculatorGame implements Game, Mappable {
     public static CalculatorGame from(Map<String, Object> map) {
         return MappableUtils.mapToGame(map);
     }
-}
 
+    /**
+     * The hash of the rules a game of a level can use, with its portals:
+     * {@code 31 * Arrays.hashCode(rules) + Arrays.hashCode(portals)}. Meta Add
+     * adds its offset to the hash of each rule it changes, and storing a value
+     * changes the hash of the Store rule, so the hash is found from the hash
+     * with no offset and nothing stored in a few int operations, without
+     * making the rules.
+     */
+    private static final class RulesHash {
+        /** The hash with no offset and nothing stored */
+        private final int BASE;
+        /** How much the hash of the rules changes per unit of offset */
+        private final int OFFSET_WEIGHT;
+        /** How much it changes per unit of the Store rule's hash */
+        private final int STORE_WEIGHT;
+
+        /** @param rules the sanitized rules of a level, before any Meta Add */
+        RulesHash(Rule[] rules, int[] portals) {
+            int hash = 1, offsetWeight = 0, storeWeight = 0;
+            for (Rule rule : rules) {
+                boolean isStore = rule.getOperator() == Rule.STORE;
+                int ruleHash =
+                    isStore ? StoreRule.hashCode(false, 0) : rule.hashCode();
+                hash = 31 * hash + ruleHash;
+                offsetWeight *= 31;
+                if (changesWithMetaAdd(rule)) offsetWeight++;
+                storeWeight *= 31;
+                if (isStore) storeWeight++;
+            }
+            BASE = 31 * hash + Arrays.hashCode(portals);
+            OFFSET_WEIGHT = offsetWeight;
+            STORE_WEIGHT = storeWeight;
+        }
+
+        /**
+         * @return the hash of the rules after the given offset, with the
+         * given value stored if any
+         */
+        int of(int offset, boolean stored, int store) {
+            int storeChange =
+                stored
+                    ? StoreRule.hashCode(true, store)
+                        - StoreRule.hashCode(false, 0)
+                    : 0;
+            return BASE
+                + 31 * (offset * OFFSET_WEIGHT + storeChange * STORE_WEIGHT);
+        }
+    }
+
+    /**
+     * Identifies a game by everything except its moves left. Two keys are
+     * equal iff their games are equal except for moves.
+     */
+    private static final class GameKey {
+        private final CalculatorGame GAME;
+
+        GameKey(CalculatorGame game) {
+            GAME = game;
+        }
+
+        /**
+         * @return the hash of a key of a game with the given value, goal, and
+         * rules and portals
+         * @param rulesHash the hash of the rules and portals, see
+         * {@link RulesHash}
+         */
+        static int hash(int value, int goal, int rulesHash) {
+            return 31 * 31 * (31 * value + goal) + rulesHash;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof GameKey)) return false;
+            return ((GameKey) other).GAME.equalsExceptMoves(GAME);
+        }
+
+        @Override
+        public int hashCode() {
+            return GAME.hashCodeExceptMoves();
+        }
+    }
+}
 /**
  * Utility methods for converting the game to a map
  */
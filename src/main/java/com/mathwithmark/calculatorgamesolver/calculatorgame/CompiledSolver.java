@@ -0,0 +1,158 @@
+package com.mathwithmark.calculatorgamesolver.calculatorgame;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.mathwithmark.calculatorgamesolver.brutesolver.Solver;
+
+/**
+ * Solves a CalculatorGame with its {@link CompiledLevel}. The rules of the
+ * levels it supports only change the value, so a state is just a value and
+ * its depth, and the successors of each value are written by one call to the
+ * compiled successor function into buffers reused for the whole search.
+ *
+ * States are expanded in the same order as {@link Solver}, so the solutions
+ * are the same and in the same order.
+ */
+public class CompiledSolver {
+    /**
+     * The number of rules to the power of the moves above which
+     * {@link #solve} compiles a level. Smaller searches end before the JIT
+     * has compiled the level's successor function.
+     */
+    static final double COMPILE_THRESHOLD = 1e8;
+
+    private final CompiledLevel LEVEL;
+    private final int GOAL;
+    /** The transition string of each rule */
+    private final String[] TRANSITION_STRINGS;
+
+    /** The value at each depth of the current path, PATH[0] is the root */
+    private final int[] PATH;
+    /** The successor of the value at each depth under each rule */
+    private final int[][] SUCCESSORS;
+    /** The rules whose successors are expanded from each depth, in order */
+    private final int[][] SUCCESSOR_RULES;
+    /** The index of the next successor rule to expand at each depth */
+    private final int[] NEXT_SUCCESSOR;
+    /** The rule applied to reach the value at each depth */
+    private final int[] PATH_RULES;
+
+    /**
+     * Compiles the given game and prepares to solve it
+     * @throws IllegalArgumentException if the game isn't supported, see
+     * {@link #supports(CalculatorGame)}
+     */
+    public CompiledSolver(CalculatorGame game) throws IllegalArgumentException {
+        LEVEL = new CompiledLevel(game);
+        GOAL = game.getGoal();
+        Rule[] rules = game.getRules();
+        TRANSITION_STRINGS = new String[rules.length];
+        for (int i = 0; i < rules.length; i++) {
+            TRANSITION_STRINGS[i] = CalculatorGame.transitionString(rules[i]);
+        }
+        int maxDepth = game.getMovesLeft() + 1;
+        PATH = new int[maxDepth];
+        PATH[0] = game.getValue();
+        SUCCESSORS = new int[maxDepth][rules.length];
+        SUCCESSOR_RULES = new int[maxDepth][rules.length];
+        NEXT_SUCCESSOR = new int[maxDepth];
+        PATH_RULES = new int[maxDepth];
+    }
+
+    /**
+     * Whether the given game can be solved by a CompiledSolver, the same games
+     * a {@link CompiledLevel} can be made for
+     */
+    public static boolean supports(CalculatorGame game) {
+        return CompiledLevel.supports(game);
+    }
+
+    /**
+     * Solves the given game with a CompiledSolver if it is supported and its
+     * search is large enough to repay compiling it, and otherwise with a
+     * {@link PackedSolver} if it can be packed, or {@link Solver}
+     * @return the same as {@link Solver#getAllSolutions}
+     */
+    public static List<List<String>> solve(CalculatorGame game) {
+        double searchSize =
+            Math.pow(game.getRules().length, game.getMovesLeft());
+        if (searchSize >= COMPILE_THRESHOLD && supports(game)) {
+            return new CompiledSolver(game).getAllSolutions();
+        }
+        if (PackedSolver.supports(game)) {
+            return new PackedSolver(game).getAllSolutions();
+        }
+        return Solver.getAllSolutions(game);
+    }
+
+    /**
+     * Returns all solutions to the game, the same as
+     * {@link Solver#getAllSolutions}
+     * @return a list of solutions, each a list of transition strings. Returns
+     * an empty list if the game is unsolveable.
+     */
+    public List<List<String>> getAllSolutions() {
+        List<List<String>> solutions = new ArrayList<>();
+        int depth = 0;
+        expand(depth, solutions);
+        while (depth >= 0) {
+            if (NEXT_SUCCESSOR[depth] < 0) {
+                depth--;
+                continue;
+            }
+            int rule = SUCCESSOR_RULES[depth][NEXT_SUCCESSOR[depth]--];
+            PATH[depth + 1] = SUCCESSORS[depth][rule];
+            PATH_RULES[depth + 1] = rule;
+            depth++;
+            expand(depth, solutions);
+        }
+        return solutions;
+    }
+
+    /**
+     * Writes the successors of the value at the given depth, keeps the rules
+     * of those that are valid and don't return to the path, and adds every
+     * winning one to the list. The successors are expanded in reverse order,
+     * as with a stack.
+     */
+    private void expand(int depth, List<List<String>> solutions) {
+        if (depth == PATH.length - 1) { // no moves left
+            NEXT_SUCCESSOR[depth] = -1;
+            return;
+        }
+        int[] successors = SUCCESSORS[depth];
+        int[] successorRules = SUCCESSOR_RULES[depth];
+        LEVEL.successors(PATH[depth], successors);
+        int numSuccessors = 0;
+        for (int rule = 0; rule < successors.length; rule++) {
+            int successor = successors[rule];
+            if (successor == CompiledLevel.INVALID_VALUE) continue;
+            if (onPath(successor, depth)) continue;
+            successorRules[numSuccessors++] = rule;
+            if (successor == GOAL) solutions.add(solution(depth, rule));
+        }
+        NEXT_SUCCESSOR[depth] = numSuccessors - 1;
+    }
+
+    /** Whether the value is that at the given depth or any ancestor's */
+    private boolean onPath(int value, int depth) {
+        for (int i = depth; i >= 0; i--) {
+            if (PATH[i] == value) return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return the transition strings from the root along the current path to
+     * the given depth, then applying the given rule
+     */
+    private List<String> solution(int depth, int lastRule) {
+        List<String> transitionStrings = new ArrayList<>();
+        for (int i = 1; i <= depth; i++) {
+            transitionStrings.add(TRANSITION_STRINGS[PATH_RULES[i]]);
+        }
+        transitionStrings.add(TRANSITION_STRINGS[lastRule]);
+        return transitionStrings;
+    }
+}
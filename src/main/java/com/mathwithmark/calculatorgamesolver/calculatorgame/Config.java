@@ -5,6 +5,12 @@ public class Config {
   public static String TEST_CASES_PATH = "test-cases/";
   /** The file extension for every test case file */
   public static String TEST_CASE_FILE_EXTENSION = ".yaml";
+  /**
+   * The directory of the solution cache shared between runs, or null to cache
+   * solutions in memory only. Set with -Dsolution.cache.dir=path
+   */
+  public static String SOLUTION_CACHE_PATH =
+    System.getProperty("solution.cache.dir");
 
   /** The string for a rule with an invalid operator */
   static final String INVALID_STRING = "INVALID";
@@ -0,0 +1,90 @@
+package com.mathwithmark.calculatorgamesolver.calculatorgame;
+
+class ConvertRule extends Rule {
+    private final String OP_STRING_1;
+    private final String OP_STRING_2;
+    /**
+     * Whether both strings are short enough digits for {@link DigitOps}.
+     * Otherwise the value is converted as a string.
+     */
+    private final boolean DIGITS;
+    /** The from and to strings as numbers, and their lengths */
+    private final long FROM, TO;
+    private final int FROM_LENGTH, TO_LENGTH;
+
+    @Override
+    public CalculatorGame apply(CalculatorGame game) {
+        return game.successor(applyToValue(game.getValue()));
+    }
+
+    @Override
+    public long applyToValue(int value) {
+        if (DIGITS) {
+            return DigitOps.convert(value, FROM, FROM_LENGTH, TO, TO_LENGTH);
+        }
+        String valString =
+            String.valueOf(value).replace(OP_STRING_1, OP_STRING_2);
+        try {
+            return Long.parseLong(valString);
+        } catch (NumberFormatException e) {
+            return DigitOps.OUT_OF_RANGE;
+        }
+    }
+
+    ConvertRule(int operand1, int operand2) {
+        this(String.valueOf(operand1), String.valueOf(operand2));
+    }
+
+    /**
+     * Creates a Convert Rule with the given operand strings
+     *
+     * Assumes each operand string is a valid integer
+     * @param opString1 the "from" operand
+     * @param opString2 the "to" operand
+     */
+    ConvertRule(String opString1, String opString2) {
+        super(CONVERT);
+        OP_STRING_1 = opString1;
+        OP_STRING_2 = opString2;
+        DIGITS =
+            DigitOps.isConvertible(opString1)
+                && DigitOps.isConvertible(opString2);
+        FROM = DIGITS ? Long.parseLong(opString1) : 0;
+        TO = DIGITS ? Long.parseLong(opString2) : 0;
+        FROM_LENGTH = opString1.length();
+        TO_LENGTH = opString2.length();
+    }
+
+    /** @return the string that is converted */
+    String getFromString() {
+        return OP_STRING_1;
+    }
+
+    /** @return the string that the from string is converted to */
+    String getToString() {
+        return OP_STRING_2;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        return sb
+            .append(OP_STRING_1)
+            .append(Config.OPERATOR_STRINGS[CONVERT])
+            .append(OP_STRING_2)
+            .toString();
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (!(other instanceof ConvertRule)) return false;
+        ConvertRule otherConvertRule = (ConvertRule) other;
+        return OP_STRING_1.equals(otherConvertRule.OP_STRING_1)
+            && OP_STRING_2.equals(otherConvertRule.OP_STRING_2);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * OP_STRING_1.hashCode() + OP_STRING_2.hashCode();
+    }
+}
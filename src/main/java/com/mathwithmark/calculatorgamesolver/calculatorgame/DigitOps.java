@@ -0,0 +1,181 @@
+package com.mathwithmark.calculatorgamesolver.calculatorgame;
+
+/**
+ * The digit operations of the rules, on integers instead of strings. Each
+ * works on the absolute value and keeps the sign, as the rules do.
+ *
+ * Values are longs so that a result with more digits than an int holds is
+ * still exact, or {@link #OUT_OF_RANGE} if it wouldn't fit in a long either.
+ * Callers check whether a result is in range for them.
+ */
+final class DigitOps {
+    /** Returned when a result can't be valid, larger than any valid value */
+    static final long OUT_OF_RANGE = Long.MAX_VALUE;
+
+    /** Powers of ten that fit in a long, POW10[i] = 10^i */
+    static final long[] POW10 = new long[19];
+    static {
+        POW10[0] = 1;
+        for (int i = 1; i < POW10.length; i++) {
+            POW10[i] = POW10[i - 1] * 10;
+        }
+    }
+
+    /** The most digits of a value whose results all fit in a long */
+    private static final int MAX_DIGITS = 9;
+
+    private DigitOps() {
+    }
+
+    /**
+     * @return the number of digits in the given nonnegative value, or 1 if it
+     * is negative
+     */
+    static int numDigits(long value) {
+        int digits = 1;
+        while (digits < POW10.length && value >= POW10[digits]) digits++;
+        return digits;
+    }
+
+    /**
+     * @return the value with the operand's digits appended, or OUT_OF_RANGE if
+     * the operand is negative
+     */
+    static long pad(long value, int operand) {
+        if (operand < 0) return OUT_OF_RANGE;
+        long abs = Math.abs(value);
+        int operandDigits = numDigits(operand);
+        int digits = numDigits(abs) + operandDigits;
+        if (digits >= POW10.length) return OUT_OF_RANGE;
+        long padded = abs * POW10[operandDigits] + operand;
+        return value < 0 ? -padded : padded;
+    }
+
+    /**
+     * @return the value with every from string replaced by the to string, left
+     * to right and without overlap, as String.replace does, or OUT_OF_RANGE if
+     * the result has more digits than an int
+     * @param from the digits of the from string, at most {@link #MAX_DIGITS}
+     * @param fromLength the length of the from string, counting leading zeros
+     * @param to the digits of the to string, at most {@link #MAX_DIGITS}
+     * @param toLength the length of the to string, counting leading zeros
+     */
+    static long convert(
+        long value,
+        long from,
+        int fromLength,
+        long to,
+        int toLength
+    ) {
+        long abs = Math.abs(value);
+        long toScale = POW10[toLength];
+        long converted = 0;
+        int index = numDigits(abs) - 1; // index of the next digit to read
+        while (index >= 0) {
+            int windowEnd = index - fromLength + 1;
+            if (
+                windowEnd >= 0
+                    && abs / POW10[windowEnd] % POW10[fromLength] == from
+            ) {
+                converted = converted * toScale + to;
+                index -= fromLength;
+            } else {
+                converted = converted * 10 + abs / POW10[index] % 10;
+                index--;
+            }
+            if (converted > -(long) Integer.MIN_VALUE) return OUT_OF_RANGE;
+        }
+        return value < 0 ? -converted : converted;
+    }
+
+    /** @return the value with its digits reversed */
+    static long reverse(long value) {
+        long abs = Math.abs(value);
+        long reversed = 0;
+        while (abs > 0) {
+            reversed = reversed * 10 + abs % 10;
+            abs /= 10;
+        }
+        return value < 0 ? -reversed : reversed;
+    }
+
+    /** @return the sum of the digits of the value, negative if it is */
+    static long sum(long value) {
+        long sum = 0;
+        while (value != 0) {
+            sum += value % 10;
+            value /= 10;
+        }
+        return sum;
+    }
+
+    /** @return the value with each digit moved one place right */
+    static long shiftRight(long value) {
+        long abs = Math.abs(value);
+        long shifted = abs % 10 * POW10[numDigits(abs) - 1] + abs / 10;
+        return value < 0 ? -shifted : shifted;
+    }
+
+    /** @return the value with each digit moved one place left */
+    static long shiftLeft(long value) {
+        long abs = Math.abs(value);
+        long scale = POW10[numDigits(abs) - 1];
+        long shifted = abs % scale * 10 + abs / scale;
+        return value < 0 ? -shifted : shifted;
+    }
+
+    /**
+     * @return the value followed by its reversed digits, or OUT_OF_RANGE if
+     * the value has more than {@link #MAX_DIGITS} digits
+     */
+    static long mirror(long value) {
+        long abs = Math.abs(value);
+        int digits = numDigits(abs);
+        if (digits > MAX_DIGITS) return OUT_OF_RANGE;
+        long mirrored = abs * POW10[digits] + reverse(abs);
+        return value < 0 ? -mirrored : mirrored;
+    }
+
+    /** @return the value with each digit d replaced by (10 - d) % 10 */
+    static long inverseTen(long value) {
+        long abs = Math.abs(value);
+        long inverted = 0;
+        for (int i = 0; abs > 0; i++) {
+            long digit = abs % 10;
+            inverted += (10 - digit) % 10 * POW10[i];
+            abs /= 10;
+        }
+        return value < 0 ? -inverted : inverted;
+    }
+
+    /**
+     * Makes the digits of value fall through the portals: while the value has
+     * a digit at the left portal, that digit is removed and added at the right
+     * portal
+     * @param left the index of the left portal, 0 for the ones place
+     * @param right the index of the right portal, less than left
+     */
+    static long applyPortals(long value, int left, int right) {
+        long abs = Math.abs(value);
+        long leftScale = POW10[left];
+        while (abs >= leftScale) {
+            long digit = abs / leftScale % 10;
+            long above = abs / (leftScale * 10);
+            abs = above * leftScale + abs % leftScale + digit * POW10[right];
+        }
+        return value < 0 ? -abs : abs;
+    }
+
+    /**
+     * @return whether the string is 1 to {@link #MAX_DIGITS} digits, so that
+     * {@link #convert} can take it
+     */
+    static boolean isConvertible(String string) {
+        if (string.isEmpty() || string.length() > MAX_DIGITS) return false;
+        for (int i = 0; i < string.length(); i++) {
+            char c = string.charAt(i);
+            if (c < '0' || c > '9') return false;
+        }
+        return true;
+    }
+}
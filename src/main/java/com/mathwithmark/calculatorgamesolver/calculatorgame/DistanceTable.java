@@ -0,0 +1,149 @@
+package com.mathwithmark.calculatorgamesolver.calculatorgame;
+
+import java.util.Arrays;
+
+import com.mathwithmark.calculatorgamesolver.brutesolver.Heuristic;
+
+/**
+ * The fewest moves from each value of a level to its goal, for levels whose
+ * rules only change the value. Only values reachable from the start within the
+ * level's moves are kept, with the moves between them. A distance is exact for
+ * any solution that fits in the level's moves.
+ */
+class DistanceTable {
+    /** Returned by {@link #distance} for values not in the table */
+    static final int UNKNOWN = -1;
+
+    /** The index of each value in DISTANCES */
+    private final LongIntMap INDICES;
+    /** The fewest moves from each value to the goal, or UNWINNABLE */
+    private final int[] DISTANCES;
+    /** The values expanded while making the table, searching both ways */
+    private final long EXPANDED_NODES;
+
+    private DistanceTable(
+        LongIntMap indices,
+        int[] distances,
+        long expandedNodes
+    ) {
+        INDICES = indices;
+        DISTANCES = distances;
+        EXPANDED_NODES = expandedNodes;
+    }
+
+    /**
+     * Finds every value reachable from the start of the level, then the
+     * distance of each from the goal. A value found with no moves left to
+     * spare has no successors in the table, but then no solution can use any.
+     * @param level a level whose rules only change the value
+     * @param maxSize the most values to keep
+     * @return the table, or null if more than maxSize values are reachable
+     */
+    static DistanceTable of(PackedLevel level, int maxSize) {
+        int moves = PackedLevel.movesLeft(level.root());
+        LongIntMap indices = new LongIntMap();
+        int[] values = new int[16];
+        // Each move from a value to another, by index
+        int[] from = new int[16], to = new int[16];
+        int numValues = 0, numMoves = 0;
+        long expanded = 0;
+
+        values[numValues++] = PackedLevel.value(level.root());
+        indices.putIfAbsent(values[0], 0);
+        int layerStart = 0;
+        for (int depth = 0; depth < moves && layerStart < numValues; depth++) {
+            int layerEnd = numValues;
+            for (int node = layerStart; node < layerEnd; node++) {
+                expanded++;
+                for (int rule = 0; rule < level.numRules(); rule++) {
+                    int next = level.nextValue(values[node], rule);
+                    if (next == PackedLevel.INVALID_VALUE) continue;
+                    int child = indices.get(next);
+                    if (child == LongIntMap.MISSING) {
+                        if (numValues == maxSize) return null;
+                        if (numValues == values.length) {
+                            values = Arrays.copyOf(values, numValues * 2);
+                        }
+                        child = numValues++;
+                        values[child] = next;
+                        indices.putIfAbsent(next, child);
+                    }
+                    if (numMoves == from.length) {
+                        from = Arrays.copyOf(from, numMoves * 2);
+                        to = Arrays.copyOf(to, numMoves * 2);
+                    }
+                    from[numMoves] = node;
+                    to[numMoves] = child;
+                    numMoves++;
+                }
+            }
+            layerStart = layerEnd;
+        }
+        int[] distances =
+            distances(numValues, from, to, numMoves, indices.get(level.goal()));
+        // The backward search expands each value it reaches once
+        for (int distance : distances) {
+            if (distance != Heuristic.UNWINNABLE) expanded++;
+        }
+        return new DistanceTable(indices, distances, expanded);
+    }
+
+    /**
+     * Searches breadth-first backward from the goal along the given moves
+     * @param goal the index of the goal, or MISSING if it isn't reachable
+     * @return the distance of each value from the goal
+     */
+    private static int[] distances(
+        int numValues,
+        int[] from,
+        int[] to,
+        int numMoves,
+        int goal
+    ) {
+        int[] distances = new int[numValues];
+        Arrays.fill(distances, Heuristic.UNWINNABLE);
+        if (goal == LongIntMap.MISSING) return distances;
+
+        // The moves into each value are from[incoming[start[v]..start[v+1]]]
+        int[] start = new int[numValues + 1];
+        for (int i = 0; i < numMoves; i++) start[to[i] + 1]++;
+        for (int v = 0; v < numValues; v++) start[v + 1] += start[v];
+        int[] incoming = new int[numMoves];
+        int[] filled = Arrays.copyOf(start, numValues);
+        for (int i = 0; i < numMoves; i++) incoming[filled[to[i]]++] = i;
+
+        int[] queue = new int[numValues];
+        int head = 0, tail = 0;
+        distances[goal] = 0;
+        queue[tail++] = goal;
+        while (head < tail) {
+            int value = queue[head++];
+            for (int i = start[value]; i < start[value + 1]; i++) {
+                int previous = from[incoming[i]];
+                if (distances[previous] != Heuristic.UNWINNABLE) continue;
+                distances[previous] = distances[value] + 1;
+                queue[tail++] = previous;
+            }
+        }
+        return distances;
+    }
+
+    /**
+     * @return the number of values expanded while making the table, in the
+     * search forward from the start and the search backward from the goal
+     */
+    long getExpandedNodes() {
+        return EXPANDED_NODES;
+    }
+
+    /**
+     * @return the fewest moves from the value to the goal, UNWINNABLE if the
+     * goal can't be reached from it, or UNKNOWN if the value isn't in the
+     * table
+     */
+    int distance(int value) {
+        int index = INDICES.get(value);
+        if (index == LongIntMap.MISSING) return UNKNOWN;
+        return DISTANCES[index];
+    }
+}
@@ -6,11 +6,11 @@ import java.util.List;
 
 public class Helpers {
     /**
-     * @return the number of digits in the given integer
+     * @return the number of digits in the given integer, including
+     * Integer.MIN_VALUE, which has no absolute value as an int
      */
     public static int numDigits(int value) {
-        if (value == 0) return 1;
-        return (int) Math.floor(Math.log10(Math.abs(value))) + 1;
+        return DigitOps.numDigits(Math.abs((long) value));
     }
 
     /**
@@ -22,7 +22,8 @@ public class Helpers {
      * nonnegative.
      */
     public static int getDigit(int value, int digitIndex) {
-        return (int) (value / Math.pow(10, digitIndex)) % 10;
+        if (digitIndex >= DigitOps.POW10.length) return 0;
+        return (int) (value / DigitOps.POW10[digitIndex] % 10);
     }
 
     /**
@@ -35,7 +36,8 @@ public class Helpers {
      * nonnegative.
      */
     public static int digitsToTheLeft(int value, int digitIndex) {
-        return value / (int) Math.pow(10, digitIndex + 1);
+        if (digitIndex + 1 >= DigitOps.POW10.length) return 0;
+        return (int) (value / DigitOps.POW10[digitIndex + 1]);
     }
 
     /** Returns the paths to every file in Config.TEST_CASES_PATH */
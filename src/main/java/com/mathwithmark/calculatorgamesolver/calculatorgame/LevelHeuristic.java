@@ -0,0 +1,293 @@
+package com.mathwithmark.calculatorgamesolver.calculatorgame;
+
+import com.mathwithmark.calculatorgamesolver.brutesolver.Game;
+import com.mathwithmark.calculatorgamesolver.brutesolver.Heuristic;
+
+/**
+ * A lower bound on the moves needed to win a level or any game reached from
+ * it. The bound comes from what the rules can do in one move, and is the
+ * largest of:
+ *
+ * - 1 if the value is not the goal.
+ * - The moves needed to gain or lose digits until the value has as many
+ * digits as the goal, when each rule gains or loses at most a fixed number of
+ * digits per move.
+ * - The moves needed to grow or shrink the value's magnitude to the goal's,
+ * when each rule changes the magnitude by at most a fixed amount that way.
+ * - UNWINNABLE if the value and goal have different signs and no rule can
+ * change the sign.
+ *
+ * A heuristic made {@link #withDistanceTable} is exact instead for levels
+ * whose rules only change the value: every value reachable from the start is
+ * found ahead of time, and the fewest moves from it to the goal are stored in
+ * a table. Repeated states are ignored, so the table is never more than the
+ * true number of moves. Making the table is a search of its own, so its
+ * expanded nodes are reported by {@link #getTableExpandedNodes}.
+ *
+ * Games that aren't levels get a bound of 0.
+ */
+public class LevelHeuristic implements Heuristic {
+    /** The most values a table of distances to the goal is made for */
+    public static final int MAX_TABLE_SIZE = 1 << 20;
+
+    /** The most digits a value can gain or lose in one move */
+    private static final int MAX_CHANGE = Config.MAX_DIGITS - 1;
+
+    /** The change of a rule that can change the value by any amount */
+    private static final int UNBOUNDED = -1;
+
+    /** The distance of each value from the goal, or null if not known */
+    private final DistanceTable TABLE;
+    /** Whether a rule can change the sign of the value */
+    private final boolean SIGN_CHANGES;
+    /** The most digits a move can gain or lose, or UNBOUNDED */
+    private final int DIGITS_GAINED, DIGITS_LOST;
+    /** The most a move can add to or take from the magnitude, or UNBOUNDED */
+    private final int MAGNITUDE_GAINED, MAGNITUDE_LOST;
+
+    /**
+     * Makes bounds for the given level and the games reached from it, from
+     * what their rules can do
+     */
+    public LevelHeuristic(CalculatorGame level) {
+        this(level, null);
+    }
+
+    private LevelHeuristic(CalculatorGame level, DistanceTable table) {
+        TABLE = table;
+        Rule[] rules = level.getRules();
+        boolean portals = level.hasPortals();
+        SIGN_CHANGES = canChangeSign(rules);
+        int digitsGained = 0, digitsLost = 0;
+        int magnitudeGained = 0, magnitudeLost = 0;
+        for (Rule rule : rules) {
+            digitsGained = Math.max(digitsGained, digitsGained(rule));
+            digitsLost = Math.max(digitsLost, digitsLost(rule, portals));
+            magnitudeGained = most(magnitudeGained, magnitudeGained(rule));
+            magnitudeLost = most(magnitudeLost, magnitudeLost(rule));
+        }
+        boolean digitsBounded = digitsBounded(rules);
+        DIGITS_GAINED = digitsBounded ? digitsGained : UNBOUNDED;
+        DIGITS_LOST = digitsBounded ? digitsLost : UNBOUNDED;
+        // digits fall through the portals
+        MAGNITUDE_GAINED = portals ? UNBOUNDED : magnitudeGained;
+        MAGNITUDE_LOST = portals ? UNBOUNDED : magnitudeLost;
+    }
+
+    /**
+     * Makes bounds for the given level, finding the distance of each
+     * reachable value from the goal if the level only changes values, and
+     * otherwise from what its rules can do
+     */
+    public static LevelHeuristic withDistanceTable(CalculatorGame level) {
+        return new LevelHeuristic(level, tableFor(level));
+    }
+
+    /** @return the distances of the level's values, or null if not known */
+    private static DistanceTable tableFor(CalculatorGame level) {
+        if (!PackedLevel.supports(level)) return null;
+        if (!digitsBounded(level.getRules())) return null;
+        PackedLevel packed = new PackedLevel(level);
+        if (!packed.changesOnlyValue()) return null;
+        return DistanceTable.of(packed, MAX_TABLE_SIZE);
+    }
+
+    /**
+     * Whether the bounds are exact distances from a table, rather than
+     * estimates from the rules
+     */
+    public boolean hasDistanceTable() {
+        return TABLE != null;
+    }
+
+    /**
+     * @return the number of values expanded while making the distance table,
+     * or 0 if there is none
+     */
+    public long getTableExpandedNodes() {
+        return TABLE == null ? 0 : TABLE.getExpandedNodes();
+    }
+
+    @Override
+    public int lowerBound(Game game) {
+        if (!(game instanceof CalculatorGame)) return 0;
+        CalculatorGame level = (CalculatorGame) game;
+        int value = level.getValue(), goal = level.getGoal();
+        if (value == goal) return 0;
+        if (TABLE != null) {
+            int distance = TABLE.distance(value);
+            if (distance != DistanceTable.UNKNOWN) return distance;
+        }
+        if ((value < 0) != (goal < 0) && !SIGN_CHANGES) return UNWINNABLE;
+        int digits = Helpers.numDigits(goal) - Helpers.numDigits(value);
+        int magnitude = Math.abs(goal) - Math.abs(value);
+        int bound =
+            Math
+                .max(
+                    digits > 0
+                        ? movesFor(digits, DIGITS_GAINED)
+                        : movesFor(-digits, DIGITS_LOST),
+                    magnitude > 0
+                        ? movesFor(magnitude, MAGNITUDE_GAINED)
+                        : movesFor(-magnitude, MAGNITUDE_LOST)
+                );
+        return Math.max(1, bound);
+    }
+
+    /**
+     * @return the moves needed to change by the given amount when each move
+     * changes by at most the given change, 0 if unknown, or UNWINNABLE if it
+     * can't be changed
+     * @param difference at least 0
+     * @param change at least 0, or UNBOUNDED
+     */
+    private static int movesFor(int difference, int change) {
+        if (difference == 0 || change == UNBOUNDED) return 0;
+        if (change == 0) return UNWINNABLE;
+        return (difference + change - 1) / change;
+    }
+
+    /** @return the larger of the given changes, which may be UNBOUNDED */
+    private static int most(int change, int other) {
+        if (change == UNBOUNDED || other == UNBOUNDED) return UNBOUNDED;
+        return Math.max(change, other);
+    }
+
+    /**
+     * @return the most the rule can add to the magnitude of a value in one
+     * move, or UNBOUNDED
+     */
+    private static int magnitudeGained(Rule rule) {
+        switch (rule.getOperator()) {
+            case Rule.ADD:
+            case Rule.SUBTRACT:
+                return Math.abs(((OneRule) rule).getOperand());
+            case Rule.SIGN:
+            case Rule.DIVIDE:
+            case Rule.DELETE:
+            case Rule.SUM:
+                return 0;
+            default:
+                return UNBOUNDED;
+        }
+    }
+
+    /**
+     * @return the most the rule can take from the magnitude of a value in one
+     * move, or UNBOUNDED
+     */
+    private static int magnitudeLost(Rule rule) {
+        switch (rule.getOperator()) {
+            case Rule.ADD:
+            case Rule.SUBTRACT:
+                return Math.abs(((OneRule) rule).getOperand());
+            case Rule.MULTIPLY:
+                return ((OneRule) rule).getOperand() != 0 ? 0 : UNBOUNDED;
+            case Rule.POWER:
+                return ((OneRule) rule).getOperand() >= 1 ? 0 : UNBOUNDED;
+            case Rule.PAD:
+            case Rule.SIGN:
+            case Rule.MIRROR:
+                return 0;
+            default:
+                return UNBOUNDED;
+        }
+    }
+
+    /**
+     * @return false iff a rule can make a value outside the range of digits
+     * the other bounds assume. Meta Add changes what the other rules do, and
+     * large products overflow to values with fewer digits.
+     */
+    private static boolean digitsBounded(Rule[] rules) {
+        for (Rule rule : rules) {
+            int operator = rule.getOperator();
+            if (operator == Rule.META_ADD) return false;
+            if (!(rule instanceof OneRule)) continue;
+            int operand = ((OneRule) rule).getOperand();
+            if (operator == Rule.MULTIPLY && Math.abs(operand) >= 1000) {
+                return false;
+            }
+            if (operator == Rule.POWER && operand >= 3 && operand % 2 == 1) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** @return the most digits the rule can add to a value in one move */
+    private static int digitsGained(Rule rule) {
+        switch (rule.getOperator()) {
+            case Rule.ADD:
+            case Rule.SUBTRACT:
+            case Rule.PAD:
+                return Helpers.numDigits(((OneRule) rule).getOperand());
+            case Rule.MULTIPLY:
+                int factor = ((OneRule) rule).getOperand();
+                return factor == 0 ? 0 : Helpers.numDigits(factor);
+            case Rule.POWER:
+                return ((OneRule) rule).getOperand() >= 2 ? MAX_CHANGE : 0;
+            case Rule.MIRROR:
+                return Config.MAX_DIGITS / 2;
+            case Rule.CONVERT:
+                ConvertRule convertRule = (ConvertRule) rule;
+                return convertRule.getToString().length()
+                    > convertRule.getFromString().length() ? MAX_CHANGE : 0;
+            case Rule.STORE:
+                return MAX_CHANGE;
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * @return the most digits the rule can remove from a value in one move,
+     * with or without portals
+     */
+    private static int digitsLost(Rule rule, boolean portals) {
+        if (portals) return MAX_CHANGE; // digits fall through the portals
+        switch (rule.getOperator()) {
+            case Rule.ADD:
+            case Rule.SUBTRACT:
+                return ((OneRule) rule).getOperand() == 0 ? 0 : MAX_CHANGE;
+            case Rule.MULTIPLY:
+                return ((OneRule) rule).getOperand() == 0 ? MAX_CHANGE : 0;
+            case Rule.DIVIDE:
+                return Helpers.numDigits(((OneRule) rule).getOperand());
+            case Rule.POWER:
+                return ((OneRule) rule).getOperand() <= 0 ? MAX_CHANGE : 0;
+            case Rule.DELETE:
+            case Rule.SHIFT_RIGHT:
+                return 1;
+            case Rule.SUM:
+                return MAX_CHANGE - 1; // digit sums have at most two digits
+            case Rule.CONVERT:
+            case Rule.REVERSE:
+            case Rule.SHIFT_LEFT:
+                return MAX_CHANGE; // leading zeros are dropped
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * @return true iff a rule can make a negative value nonnegative or a
+     * nonnegative value negative
+     */
+    private static boolean canChangeSign(Rule[] rules) {
+        for (Rule rule : rules) {
+            switch (rule.getOperator()) {
+                case Rule.SIGN:
+                case Rule.ADD:
+                case Rule.SUBTRACT:
+                case Rule.MULTIPLY:
+                case Rule.DIVIDE:
+                case Rule.DELETE:
+                case Rule.POWER:
+                case Rule.CONVERT:
+                    return true;
+            }
+        }
+        return false;
+    }
+}
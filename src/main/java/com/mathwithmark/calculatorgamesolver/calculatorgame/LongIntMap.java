@@ -0,0 +1,85 @@
+package com.mathwithmark.calculatorgamesolver.calculatorgame;
+
+import java.util.Arrays;
+
+/**
+ * A hash map from long keys to int values that stores both in primitive arrays,
+ * so lookups and insertions create no objects. Uses open addressing with
+ * linear probing.
+ *
+ * Keys must not be {@link Long#MIN_VALUE}, which marks empty slots.
+ */
+final class LongIntMap {
+    /** Returned by {@link #get} for missing keys */
+    static final int MISSING = -1;
+
+    private static final long EMPTY = Long.MIN_VALUE;
+
+    private long[] keys;
+    private int[] values;
+    private int size = 0;
+
+    LongIntMap() {
+        this(16);
+    }
+
+    /** @param expectedSize how many entries to make room for */
+    LongIntMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(expectedSize, 8) * 2);
+        keys = new long[capacity * 2];
+        values = new int[capacity * 2];
+        Arrays.fill(keys, EMPTY);
+    }
+
+    int size() {
+        return size;
+    }
+
+    /** @return the value for the key, or MISSING if there is none */
+    int get(long key) {
+        int mask = keys.length - 1;
+        for (int i = slot(key, mask);; i = (i + 1) & mask) {
+            if (keys[i] == key) return values[i];
+            if (keys[i] == EMPTY) return MISSING;
+        }
+    }
+
+    boolean containsKey(long key) {
+        return get(key) != MISSING;
+    }
+
+    /**
+     * Associates the value with the key unless the key is already present
+     * @param value must not be MISSING
+     * @return true iff the key was added
+     */
+    boolean putIfAbsent(long key, int value) {
+        int mask = keys.length - 1;
+        int i = slot(key, mask);
+        while (keys[i] != EMPTY) {
+            if (keys[i] == key) return false;
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        values[i] = value;
+        if (++size * 2 > keys.length) grow();
+        return true;
+    }
+
+    private static int slot(long key, int mask) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new long[oldKeys.length * 2];
+        values = new int[oldValues.length * 2];
+        Arrays.fill(keys, EMPTY);
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) putIfAbsent(oldKeys[i], oldValues[i]);
+        }
+    }
+}
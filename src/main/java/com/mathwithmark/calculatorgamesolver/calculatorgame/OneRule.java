@@ -0,0 +1,43 @@
+package com.mathwithmark.calculatorgamesolver.calculatorgame;
+
+class OneRule extends Rule {
+    private final int OPERAND;
+
+    OneRule(int operator, int operand) {
+        super(operator);
+        OPERAND = operand;
+    }
+
+    public int getOperand() {
+        return OPERAND;
+    }
+
+    @Override
+    public CalculatorGame apply(CalculatorGame game) {
+        if (getOperator() == META_ADD) return game.metaAddSuccessor(OPERAND);
+        return game.successor(applyToValue(game.getValue()));
+    }
+
+    @Override
+    public long applyToValue(int value) {
+        return applyToValue(getOperator(), value, OPERAND);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (!(other instanceof OneRule)) return false;
+        OneRule otherOneRule = (OneRule) other;
+        return otherOneRule.getOperator() == getOperator()
+            && otherOneRule.getOperand() == getOperand();
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * getOperator() + getOperand();
+    }
+
+    @Override
+    public String toString() {
+        return Config.ruleString(getOperator(), getOperand());
+    }
+}
@@ -0,0 +1,551 @@
+package com.mathwithmark.calculatorgamesolver.calculatorgame;
+
+/**
+ * A level prepared for the packed engine. Each state of the level is packed
+ * into a single long, and each rule is applied as a pure function from one
+ * packed state to the next, without creating any objects.
+ *
+ * From the most significant bits down, a packed state holds:
+ * <ul>
+ * <li>the value, offset by {@link #MAX_VALUE} (21 bits)</li>
+ * <li>the Store operand, offset by {@link #MAX_VALUE} + 1, or 0 if the Store
+ * rule is uninitialized (21 bits)</li>
+ * <li>the sum of all Meta Add operands applied so far (15 bits, signed)</li>
+ * <li>the moves left (7 bits)</li>
+ * </ul>
+ * The goal and portals are the same for every state of a level, so they are
+ * kept in the level instead.
+ *
+ * Values are valid from -{@link #MAX_VALUE} to {@link #MAX_VALUE}. Unlike
+ * {@link CalculatorGame}, this doesn't allow {@link Integer#MIN_VALUE}, which
+ * only overflowing rules such as Power can reach.
+ */
+final class PackedLevel {
+    /** Returned instead of a state when applying a rule is invalid */
+    static final long INVALID = -1L;
+
+    /** Returned instead of a value when applying a rule is invalid */
+    static final int INVALID_VALUE = Integer.MIN_VALUE;
+
+    /** The largest absolute value of a game */
+    static final int MAX_VALUE = 999_999;
+
+    /** The most moves left a packed state can hold */
+    static final int MAX_MOVES = (1 << 7) - 1;
+
+    /** The largest absolute Meta Add offset a packed state can hold */
+    static final int MAX_OFFSET = (1 << 14) - 1;
+
+    private static final int VALUE_SHIFT = 43;
+    private static final int STORE_SHIFT = 22;
+    private static final int OFFSET_SHIFT = 7;
+    private static final long FIELD_MASK = (1L << 21) - 1;
+    private static final long OFFSET_MASK = (1L << 15) - 1;
+    private static final long MOVES_MASK = MAX_MOVES;
+
+    /** The sanitized rules of the level, before any Meta Add */
+    private final Rule[] RULES;
+    private final int[] OPERATORS;
+    /** The operand of each rule before any Meta Add, 0 if it has none */
+    private final int[] OPERANDS;
+    /** Whether each rule's operand changes with Meta Add */
+    private final boolean[] META_ADDABLE;
+    /** The from and to strings of Convert rules as numbers, and lengths */
+    private final long[] CONVERT_FROM, CONVERT_TO;
+    private final int[] CONVERT_FROM_LENGTH, CONVERT_TO_LENGTH;
+    /**
+     * The value each value goes to under each rule before any Meta Add, or
+     * null for rules that change more than the value, and for arithmetic
+     * without portals, which is quicker to redo than to look up
+     */
+    private final TransitionTable[] TABLES;
+
+    private final int GOAL;
+    /** The portal indices, or -1 if there are no portals */
+    private final int LEFT_PORTAL, RIGHT_PORTAL;
+    /** The values after portals, or null if the portals move no digits */
+    private final PortalTable PORTAL_TABLE;
+    /** Whether any rule's operand changes with Meta Add */
+    private final boolean TRACKS_OFFSET;
+    /** The packed state of the game this level was made from */
+    private final long ROOT;
+
+    /**
+     * Prepares the given game for the packed engine
+     * @throws IllegalArgumentException if the game can't be packed, see
+     * {@link #supports(CalculatorGame)}
+     */
+    PackedLevel(CalculatorGame game) throws IllegalArgumentException {
+        String unsupported = unsupportedReason(game);
+        if (unsupported != null) throw new IllegalArgumentException(unsupported);
+
+        RULES = game.getRules();
+        int numRules = RULES.length;
+        OPERATORS = new int[numRules];
+        OPERANDS = new int[numRules];
+        META_ADDABLE = new boolean[numRules];
+        CONVERT_FROM = new long[numRules];
+        CONVERT_TO = new long[numRules];
+        CONVERT_FROM_LENGTH = new int[numRules];
+        CONVERT_TO_LENGTH = new int[numRules];
+        boolean tracksOffset = false;
+        int store = 0;
+        for (int i = 0; i < numRules; i++) {
+            Rule rule = RULES[i];
+            int operator = rule.getOperator();
+            OPERATORS[i] = operator;
+            if (rule instanceof OneRule) {
+                OPERANDS[i] = ((OneRule) rule).getOperand();
+            }
+            if (rule instanceof StoreRule) {
+                StoreRule storeRule = (StoreRule) rule;
+                if (storeRule.INITIALIZED) store = packStore(OPERANDS[i]);
+            } else if (rule instanceof OneRule && operator != Rule.META_ADD) {
+                META_ADDABLE[i] = true;
+                tracksOffset = true;
+            }
+            if (rule instanceof ConvertRule) {
+                ConvertRule convertRule = (ConvertRule) rule;
+                CONVERT_FROM[i] = Long.parseLong(convertRule.getFromString());
+                CONVERT_FROM_LENGTH[i] = convertRule.getFromString().length();
+                CONVERT_TO[i] = Long.parseLong(convertRule.getToString());
+                CONVERT_TO_LENGTH[i] = convertRule.getToString().length();
+            }
+        }
+        TRACKS_OFFSET = tracksOffset;
+        GOAL = game.getGoal();
+        int[] portals = game.getPortals();
+        LEFT_PORTAL = portals == null ? -1 : portals[0];
+        RIGHT_PORTAL = portals == null ? -1 : portals[1];
+        PORTAL_TABLE =
+            portals == null ? null : PortalTable.of(portals[0], portals[1]);
+        ROOT = pack(game.getValue(), store, 0, game.getMovesLeft());
+        TABLES = new TransitionTable[numRules];
+        for (int i = 0; i < numRules; i++) {
+            if (!changesOnlyValue(OPERATORS[i])) continue;
+            if (portals == null && isArithmetic(OPERATORS[i])) continue;
+            TABLES[i] = TransitionTable.of(RULES[i], portals);
+        }
+    }
+
+    /**
+     * Whether the given game can be packed. A game can be packed unless it has
+     * more than {@link #MAX_MOVES} moves, Meta Add rules that could push
+     * operands more than {@link #MAX_OFFSET} away from where they started, or
+     * Convert rules whose strings aren't 1 to 9 digits.
+     */
+    static boolean supports(CalculatorGame game) {
+        return unsupportedReason(game) == null;
+    }
+
+    /** @return why the game can't be packed, or null if it can */
+    private static String unsupportedReason(CalculatorGame game) {
+        int moves = game.getMovesLeft();
+        if (moves > MAX_MOVES) {
+            return String
+                .format("Too many moves: %d, max %d", moves, MAX_MOVES);
+        }
+        for (Rule rule : game.getRules()) {
+            if (rule.getOperator() == Rule.META_ADD) {
+                long reach = (long) moves * ((OneRule) rule).getOperand();
+                if (Math.abs(reach) > MAX_OFFSET) {
+                    return "Meta Add operand too large to pack: " + rule;
+                }
+            }
+            if (rule instanceof StoreRule) {
+                int operand = ((StoreRule) rule).getOperand();
+                if (Math.abs(operand) > MAX_VALUE) {
+                    return "Store operand too large to pack: " + operand;
+                }
+            }
+            if (rule instanceof ConvertRule) {
+                ConvertRule convertRule = (ConvertRule) rule;
+                if (
+                    !DigitOps.isConvertible(convertRule.getFromString())
+                        || !DigitOps.isConvertible(convertRule.getToString())
+                ) {
+                    return "Convert strings must be 1 to 9 digits: " + rule;
+                }
+            }
+        }
+        return null;
+    }
+
+    /** @return the packed state of the game this level was made from */
+    long root() {
+        return ROOT;
+    }
+
+    int numRules() {
+        return RULES.length;
+    }
+
+    int goal() {
+        return GOAL;
+    }
+
+    boolean isWon(long state) {
+        return value(state) == GOAL;
+    }
+
+    static int value(long state) {
+        return (int) ((state >>> VALUE_SHIFT) & FIELD_MASK) - MAX_VALUE;
+    }
+
+    static int movesLeft(long state) {
+        return (int) (state & MOVES_MASK);
+    }
+
+    /** @return the sum of all Meta Add operands applied to reach the state */
+    static int offset(long state) {
+        return (int) ((state >>> OFFSET_SHIFT) & OFFSET_MASK) - MAX_OFFSET - 1;
+    }
+
+    /**
+     * Whether two states of the same level are equal except for moves left,
+     * the packed counterpart of {@link CalculatorGame#roughlyEquals}
+     */
+    static boolean roughlyEquals(long state, long other) {
+        return roughKey(state) == roughKey(other);
+    }
+
+    /**
+     * @return a key for the state that is equal for two states of the same
+     * level iff they are {@link #roughlyEquals}
+     */
+    static long roughKey(long state) {
+        return state | MOVES_MASK;
+    }
+
+    private static long pack(int value, int store, int offset, int moves) {
+        return ((long) (value + MAX_VALUE) << VALUE_SHIFT)
+            | ((long) store << STORE_SHIFT)
+            | ((long) (offset + MAX_OFFSET + 1) << OFFSET_SHIFT)
+            | moves;
+    }
+
+    /** @return the Store field for an initialized Store rule */
+    private static int packStore(int operand) {
+        return operand + MAX_VALUE + 1;
+    }
+
+    /** @return the Store field of the state, 0 if uninitialized */
+    private static int store(long state) {
+        return (int) ((state >>> STORE_SHIFT) & FIELD_MASK);
+    }
+
+    /**
+     * @return the operand of the given rule in the given state, after any
+     * Meta Add
+     */
+    int operand(long state, int ruleIndex) {
+        if (!META_ADDABLE[ruleIndex]) return OPERANDS[ruleIndex];
+        return OPERANDS[ruleIndex] + offset(state);
+    }
+
+    /**
+     * Applies the given rule to the given state
+     * @return the successor state, or INVALID if there are no moves left or
+     * applying the rule would make an invalid game
+     */
+    long apply(long state, int ruleIndex) {
+        int moves = movesLeft(state);
+        if (moves == 0) return INVALID;
+        int value = value(state);
+        int store = store(state);
+        int offset = offset(state);
+        long newValue;
+        switch (OPERATORS[ruleIndex]) {
+            case Rule.META_ADD:
+                if (TRACKS_OFFSET) offset += OPERANDS[ruleIndex];
+                store = 0; // Meta Add resets the Store rule
+                newValue = value;
+                break;
+            case Rule.STORE:
+                if (store == 0 || store <= MAX_VALUE) return INVALID;
+                newValue = DigitOps.pad(value, store - MAX_VALUE - 1);
+                break;
+            case Rule.UPDATE_STORE:
+                store = packStore(value);
+                newValue = value;
+                break;
+            default:
+                boolean tabled =
+                    TABLES[ruleIndex] != null
+                        && (offset == 0 || !META_ADDABLE[ruleIndex]);
+                if (tabled) {
+                    int next = TABLES[ruleIndex].nextValue(value);
+                    if (next == INVALID_VALUE) return INVALID;
+                    return pack(next, store, offset, moves - 1);
+                }
+                newValue =
+                    rawValue(value, ruleIndex, operand(state, ruleIndex));
+        }
+        int portaled = applyPortals(newValue);
+        if (portaled == INVALID_VALUE) return INVALID;
+        return pack(portaled, store, offset, moves - 1);
+    }
+
+    /**
+     * Whether every rule of the level only changes the value, so that a state
+     * is fully described by its value and moves left
+     */
+    boolean changesOnlyValue() {
+        for (int operator : OPERATORS) {
+            if (!changesOnlyValue(operator)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Whether the operator is plain arithmetic on the value, with no loop over
+     * its digits
+     */
+    private static boolean isArithmetic(int operator) {
+        switch (operator) {
+            case Rule.ADD:
+            case Rule.SUBTRACT:
+            case Rule.MULTIPLY:
+            case Rule.DIVIDE:
+            case Rule.SIGN:
+            case Rule.DELETE:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /** Whether rules with the given operator only change the value */
+    private static boolean changesOnlyValue(int operator) {
+        return operator != Rule.META_ADD
+            && operator != Rule.STORE
+            && operator != Rule.UPDATE_STORE;
+    }
+
+    /**
+     * Applies the given rule to the given value. Only valid if the level
+     * {@link #changesOnlyValue()}.
+     * @return the new value after portals, or INVALID_VALUE if applying the
+     * rule would make an invalid game
+     */
+    int nextValue(int value, int ruleIndex) {
+        TransitionTable table = TABLES[ruleIndex];
+        if (table != null) return table.nextValue(value);
+        return applyPortals(rawValue(value, ruleIndex, OPERANDS[ruleIndex]));
+    }
+
+    /**
+     * Applies a rule that only changes the value, before portals
+     * @return the new value, which may be out of range
+     */
+    private long rawValue(int value, int ruleIndex, int operand) {
+        int operator = OPERATORS[ruleIndex];
+        if (operator == Rule.CONVERT) return convert(value, ruleIndex);
+        return Rule.applyToValue(operator, value, operand);
+    }
+
+    /**
+     * @return why {@link #previousValues} can't undo the given rule, or null
+     * if it can
+     */
+    String notInvertibleReason(int ruleIndex) {
+        int operand = OPERANDS[ruleIndex];
+        switch (OPERATORS[ruleIndex]) {
+            case Rule.MULTIPLY:
+            case Rule.DIVIDE:
+                if (operand == 0) return "Operand of 0: " + RULES[ruleIndex];
+                return null;
+            case Rule.POWER:
+                if (operand <= 0) {
+                    return "Operand not positive: " + RULES[ruleIndex];
+                }
+                return null;
+            case Rule.ADD:
+            case Rule.SUBTRACT:
+            case Rule.PAD:
+            case Rule.SIGN:
+            case Rule.DELETE:
+            case Rule.REVERSE:
+            case Rule.SHIFT_RIGHT:
+            case Rule.SHIFT_LEFT:
+            case Rule.MIRROR:
+            case Rule.INVERSE_TEN:
+                return null;
+            default:
+                return "Not invertible: " + RULES[ruleIndex];
+        }
+    }
+
+    /**
+     * @return the most values {@link #previousValues} can find for any value
+     * and rule of this level
+     */
+    int maxPreviousValues() {
+        int max = 20; // Delete of 0
+        for (int i = 0; i < OPERATORS.length; i++) {
+            if (OPERATORS[i] == Rule.DIVIDE) {
+                long range = 2L * Math.abs((long) OPERANDS[i]) - 1;
+                max = (int) Math.max(max, Math.min(range, 2 * MAX_VALUE + 1));
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Finds every value that the given rule takes to the given value. Only
+     * valid if the level {@link #changesOnlyValue()}, has no portals, and the
+     * rule has no {@link #notInvertibleReason}. The same value may be found
+     * more than once.
+     * @param previous filled with the values found, must hold at least
+     * {@link #maxPreviousValues()}
+     * @return the number of values found
+     */
+    int previousValues(int value, int ruleIndex, int[] previous) {
+        int operand = OPERANDS[ruleIndex];
+        long abs = Math.abs((long) value);
+        int sign = value < 0 ? -1 : 1;
+        int count = 0;
+        switch (OPERATORS[ruleIndex]) {
+            case Rule.ADD:
+                count = candidate(previous, count, (long) value - operand);
+                break;
+            case Rule.SUBTRACT:
+                count = candidate(previous, count, (long) value + operand);
+                break;
+            case Rule.MULTIPLY:
+                if (value % operand == 0) {
+                    count = candidate(previous, count, value / operand);
+                }
+                break;
+            case Rule.DIVIDE:
+                long center = (long) value * operand;
+                long spread = Math.abs((long) operand) - 1;
+                long low = Math.max(center - spread, -MAX_VALUE);
+                long high = Math.min(center + spread, MAX_VALUE);
+                for (long x = low; x <= high; x++) {
+                    count = candidate(previous, count, x);
+                }
+                break;
+            case Rule.PAD:
+                if (operand >= 0) {
+                    count = candidate(
+                        previous,
+                        count,
+                        value / DigitOps.POW10[DigitOps.numDigits(operand)]
+                    );
+                }
+                break;
+            case Rule.SIGN:
+                count = candidate(previous, count, -(long) value);
+                break;
+            case Rule.DELETE:
+                for (int digit = 0; digit <= 9; digit++) {
+                    count = candidate(previous, count, value * 10L + digit);
+                    count = candidate(previous, count, value * 10L - digit);
+                }
+                break;
+            case Rule.REVERSE:
+                long reversed = DigitOps.reverse(value);
+                for (int zeros = 0; zeros <= 6; zeros++) {
+                    long padded = reversed * DigitOps.POW10[zeros];
+                    count = candidate(previous, count, padded);
+                }
+                break;
+            case Rule.SHIFT_RIGHT:
+                count = candidate(previous, count, DigitOps.shiftLeft(value));
+                count = candidate(previous, count, value * 10L);
+                break;
+            case Rule.SHIFT_LEFT:
+                // the first digit moved to the end, maybe past some zeros
+                for (int zeros = 0; zeros <= 6; zeros++) {
+                    long shifted = abs % 10 * DigitOps.POW10[zeros] + abs / 10;
+                    count = candidate(previous, count, sign * shifted);
+                }
+                break;
+            case Rule.MIRROR:
+                long half = abs / DigitOps.POW10[DigitOps.numDigits(abs) / 2];
+                count = candidate(previous, count, sign * half);
+                break;
+            case Rule.INVERSE_TEN:
+                count = candidate(previous, count, DigitOps.inverseTen(value));
+                break;
+            case Rule.POWER:
+                long root = Math.round(Math.pow(abs, 1.0 / operand));
+                for (long x = root - 1; x <= root + 1; x++) {
+                    count = candidate(previous, count, x);
+                    count = candidate(previous, count, -x);
+                }
+                break;
+        }
+        // keep only the candidates that really lead to the value
+        int kept = 0;
+        for (int i = 0; i < count; i++) {
+            if (nextValue(previous[i], ruleIndex) == value) {
+                previous[kept++] = previous[i];
+            }
+        }
+        return kept;
+    }
+
+    /**
+     * Adds the candidate to the buffer if it's in range
+     * @return the new number of candidates in the buffer
+     */
+    private static int candidate(int[] buffer, int count, long candidate) {
+        if (candidate < -MAX_VALUE || candidate > MAX_VALUE) return count;
+        buffer[count] = (int) candidate;
+        return count + 1;
+    }
+
+    int operator(int ruleIndex) {
+        return OPERATORS[ruleIndex];
+    }
+
+    /** @return the operand of the given rule before any Meta Add */
+    int baseOperand(int ruleIndex) {
+        return OPERANDS[ruleIndex];
+    }
+
+    boolean hasPortals() {
+        return LEFT_PORTAL >= 0;
+    }
+
+    /**
+     * @return the string describing the use of the given rule in the given
+     * state, the same as {@link CalculatorGame#transitionString}
+     */
+    String transitionString(long state, int ruleIndex) {
+        if (!META_ADDABLE[ruleIndex]) {
+            return CalculatorGame.transitionString(RULES[ruleIndex]);
+        }
+        return Config
+            .ruleString(OPERATORS[ruleIndex], operand(state, ruleIndex));
+    }
+
+    /**
+     * Makes the digits of value fall through the portals, the same as
+     * {@link CalculatorGame}'s constructor does
+     * @return the value after portals, or INVALID_VALUE if the value has too
+     * many digits
+     */
+    private int applyPortals(long value) {
+        if (value < -MAX_VALUE || value > MAX_VALUE) return INVALID_VALUE;
+        if (PORTAL_TABLE == null) return (int) value;
+        return PORTAL_TABLE.apply((int) value);
+    }
+
+    /**
+     * @return the value with every Convert from string replaced by the to
+     * string, as String.replace does. May be out of range.
+     */
+    private long convert(int value, int ruleIndex) {
+        return DigitOps
+            .convert(
+                value,
+                CONVERT_FROM[ruleIndex],
+                CONVERT_FROM_LENGTH[ruleIndex],
+                CONVERT_TO[ruleIndex],
+                CONVERT_TO_LENGTH[ruleIndex]
+            );
+    }
+}
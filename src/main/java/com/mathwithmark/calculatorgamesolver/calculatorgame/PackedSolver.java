@@ -0,0 +1,132 @@
+package com.mathwithmark.calculatorgamesolver.calculatorgame;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Solves a CalculatorGame with the packed engine. States are packed into longs
+ * and successors are written into buffers that are reused for the whole
+ * search, so expanding a state creates no objects. Objects are only created to
+ * report a solution.
+ *
+ * States are expanded in the same order as
+ * {@link com.mathwithmark.calculatorgamesolver.brutesolver.Solver}, so the
+ * solutions are the same and in the same order.
+ */
+public class PackedSolver {
+    private final PackedLevel LEVEL;
+
+    /** The state at each depth of the current path, PATH[0] is the root */
+    private final long[] PATH;
+    /** The non-redundant successors of the state at each depth */
+    private final long[][] SUCCESSORS;
+    /** The rule applied to reach each successor */
+    private final int[][] SUCCESSOR_RULES;
+    /** The number of successors at each depth */
+    private final int[] NUM_SUCCESSORS;
+    /** The index of the next successor to expand at each depth */
+    private final int[] NEXT_SUCCESSOR;
+    /** The rule applied to reach the state at each depth */
+    private final int[] PATH_RULES;
+
+    /**
+     * Prepares to solve the given game
+     * @throws IllegalArgumentException if the game can't be packed, see
+     * {@link #supports(CalculatorGame)}
+     */
+    public PackedSolver(CalculatorGame game) throws IllegalArgumentException {
+        LEVEL = new PackedLevel(game);
+        int maxDepth = game.getMovesLeft() + 1;
+        int numRules = LEVEL.numRules();
+        PATH = new long[maxDepth];
+        SUCCESSORS = new long[maxDepth][numRules];
+        SUCCESSOR_RULES = new int[maxDepth][numRules];
+        NUM_SUCCESSORS = new int[maxDepth];
+        NEXT_SUCCESSOR = new int[maxDepth];
+        PATH_RULES = new int[maxDepth];
+    }
+
+    /**
+     * Whether the given game can be solved by a PackedSolver. Games with more
+     * than 127 moves, very large Meta Add operands, or Convert rules of more
+     * than 9 digits can't be.
+     */
+    public static boolean supports(CalculatorGame game) {
+        return PackedLevel.supports(game);
+    }
+
+    /**
+     * Returns all solutions to the game, the same as
+     * {@link com.mathwithmark.calculatorgamesolver.brutesolver.Solver#getAllSolutions}
+     * @return a list of solutions, each a list of transition strings. Returns
+     * an empty list if the game is unsolveable.
+     */
+    public List<List<String>> getAllSolutions() {
+        List<List<String>> solutions = new ArrayList<>();
+        PATH[0] = LEVEL.root();
+        int depth = 0;
+        expand(depth, solutions);
+        while (depth >= 0) {
+            if (NEXT_SUCCESSOR[depth] < 0) {
+                depth--;
+                continue;
+            }
+            int next = NEXT_SUCCESSOR[depth]--;
+            PATH[depth + 1] = SUCCESSORS[depth][next];
+            PATH_RULES[depth + 1] = SUCCESSOR_RULES[depth][next];
+            depth++;
+            expand(depth, solutions);
+        }
+        return solutions;
+    }
+
+    /**
+     * Fills the successor buffers of the given depth with the non-redundant
+     * successors of the state there, and adds every winning one to the list.
+     * The successors are expanded in reverse order, as with a stack.
+     */
+    private void expand(int depth, List<List<String>> solutions) {
+        long state = PATH[depth];
+        long[] successors = SUCCESSORS[depth];
+        int[] successorRules = SUCCESSOR_RULES[depth];
+        int numSuccessors = 0;
+        for (int rule = 0; rule < successors.length; rule++) {
+            long successor = LEVEL.apply(state, rule);
+            if (successor == PackedLevel.INVALID) continue;
+            if (redundant(successor, depth)) continue;
+            successors[numSuccessors] = successor;
+            successorRules[numSuccessors] = rule;
+            numSuccessors++;
+            if (LEVEL.isWon(successor)) {
+                solutions.add(solution(depth, rule));
+            }
+        }
+        NUM_SUCCESSORS[depth] = numSuccessors;
+        NEXT_SUCCESSOR[depth] = numSuccessors - 1;
+    }
+
+    /**
+     * Whether the successor is roughly equal to the state at the given depth
+     * or any of its ancestors
+     */
+    private boolean redundant(long successor, int depth) {
+        for (int i = depth; i >= 0; i--) {
+            if (PackedLevel.roughlyEquals(successor, PATH[i])) return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return the transition strings from the root along the current path to
+     * the given depth, then applying the given rule
+     */
+    private List<String> solution(int depth, int lastRule) {
+        List<String> transitionStrings = new ArrayList<>();
+        for (int i = 1; i <= depth; i++) {
+            transitionStrings
+                .add(LEVEL.transitionString(PATH[i - 1], PATH_RULES[i]));
+        }
+        transitionStrings.add(LEVEL.transitionString(PATH[depth], lastRule));
+        return transitionStrings;
+    }
+}
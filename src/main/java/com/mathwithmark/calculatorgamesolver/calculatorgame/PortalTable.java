@@ -0,0 +1,78 @@
+package com.mathwithmark.calculatorgamesolver.calculatorgame;
+
+/**
+ * The value each value becomes after its digits fall through one pair of
+ * portals. Values have at most {@link Config#MAX_DIGITS} digits, so the table
+ * covers every absolute value, but it is filled lazily in pages like
+ * {@link TransitionTable}: a value is computed the first time it is looked up.
+ *
+ * There is one table per pair of portals, shared by every level with that
+ * pair, see {@link #of}. Lookups are safe from several threads at once: an
+ * entry is either 0, meaning not yet computed, or its final value, and a
+ * thread that misses a write from another just computes the same value again.
+ */
+final class PortalTable {
+    private static final int PAGE_BITS = 12;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+    private static final int NUM_VALUES =
+        (int) DigitOps.POW10[Config.MAX_DIGITS];
+    private static final int NUM_PAGES =
+        (NUM_VALUES + PAGE_SIZE - 1) / PAGE_SIZE;
+
+    /**
+     * The shared tables, by left and then right portal. Only portals left of
+     * the highest digit can move a digit, so there are few pairs.
+     */
+    private static final PortalTable[][] SHARED =
+        new PortalTable[Config.MAX_DIGITS][Config.MAX_DIGITS];
+
+    private final int LEFT, RIGHT;
+
+    /**
+     * Each entry is the absolute value after portals plus 1, or 0 if not yet
+     * computed. Pages are null until a value in them is computed.
+     */
+    private final int[][] PAGES = new int[NUM_PAGES][];
+
+    private PortalTable(int left, int right) {
+        LEFT = left;
+        RIGHT = right;
+    }
+
+    /**
+     * @return the table for the given portals, shared with every level that
+     * has them, or null if they leave every valid value as it is
+     * @param left the index of the left portal, 0 for the ones place
+     * @param right the index of the right portal, less than left
+     */
+    static PortalTable of(int left, int right) {
+        if (left >= Config.MAX_DIGITS) return null;
+        PortalTable table = SHARED[left][right];
+        if (table != null) return table;
+        synchronized (SHARED) {
+            if (SHARED[left][right] == null) {
+                SHARED[left][right] = new PortalTable(left, right);
+            }
+            return SHARED[left][right];
+        }
+    }
+
+    /**
+     * @return the value after its digits fall through the portals
+     * @param value a value with at most {@link Config#MAX_DIGITS} digits
+     */
+    int apply(int value) {
+        int abs = Math.abs(value);
+        int[] page = PAGES[abs >>> PAGE_BITS];
+        if (page == null) {
+            page = new int[PAGE_SIZE];
+            PAGES[abs >>> PAGE_BITS] = page;
+        }
+        int entry = page[abs & (PAGE_SIZE - 1)];
+        if (entry == 0) {
+            entry = (int) DigitOps.applyPortals(abs, LEFT, RIGHT) + 1;
+            page[abs & (PAGE_SIZE - 1)] = entry;
+        }
+        return value < 0 ? 1 - entry : entry - 1;
+    }
+}
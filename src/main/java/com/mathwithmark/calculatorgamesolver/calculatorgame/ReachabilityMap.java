@@ -0,0 +1,279 @@
+package com.mathwithmark.calculatorgamesolver.calculatorgame;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Every value reachable from the start of a level, with the fewest moves to
+ * reach it and one way to do so, whatever the goal. Once made, the shortest
+ * solution for any goal with the same start, rules, portals, and at most as
+ * many moves is found by a single lookup, see {@link #covers}.
+ *
+ * Values are found breadth-first, so each is stored once with the move that
+ * first reached it. Like {@link BitsetSolver}, only levels whose rules just
+ * change the value are supported.
+ *
+ * A map can be written to a stream and read back, to be reused between runs.
+ */
+public class ReachabilityMap {
+    /** Marks the start of a written map */
+    private static final int MAGIC = 0x43475241;
+    private static final int VERSION = 2;
+    /** The most rules a written map can have, as rule indices are shorts */
+    private static final int MAX_WRITTEN_RULES = Short.MAX_VALUE + 1;
+
+    private final int START;
+    private final int MOVES;
+    /** The transition string of each rule, by rule index */
+    private final String[] RULE_STRINGS;
+    /** The portals of the level, or null */
+    private final int[] PORTALS;
+
+    /** The reachable values, in the order they were found */
+    private final int[] VALUES;
+    /** The fewest moves to reach each value */
+    private final int[] DEPTHS;
+    /** The index of the value each value was first reached from, or -1 */
+    private final int[] PARENTS;
+    /** The index of the rule that first reached each value, or -1 */
+    private final int[] RULE_INDICES;
+    /** The index of each value in VALUES */
+    private final LongIntMap INDICES;
+
+    private ReachabilityMap(
+        int start,
+        int moves,
+        String[] ruleStrings,
+        int[] portals,
+        int[] values,
+        int[] depths,
+        int[] parents,
+        int[] ruleIndices
+    ) {
+        START = start;
+        MOVES = moves;
+        RULE_STRINGS = ruleStrings;
+        PORTALS = portals;
+        VALUES = values;
+        DEPTHS = depths;
+        PARENTS = parents;
+        RULE_INDICES = ruleIndices;
+        INDICES = new LongIntMap(values.length);
+        for (int i = 0; i < values.length; i++) {
+            INDICES.putIfAbsent(values[i], i);
+        }
+    }
+
+    /**
+     * Finds every value reachable from the start of the given level within its
+     * moves. The goal of the level is ignored.
+     * @throws IllegalArgumentException if the level isn't supported, see
+     * {@link BitsetSolver#supports(CalculatorGame)}
+     */
+    public static ReachabilityMap of(CalculatorGame level)
+        throws IllegalArgumentException {
+        if (!BitsetSolver.supports(level)) {
+            throw new IllegalArgumentException(
+                "Only levels that change just the value are supported"
+            );
+        }
+        PackedLevel packed = new PackedLevel(level);
+        int moves = level.getMovesLeft();
+        LongIntMap indices = new LongIntMap();
+        int[] values = new int[16], depths = new int[16];
+        int[] parents = new int[16], rules = new int[16];
+        int size = 0;
+
+        values[0] = level.getValue();
+        parents[0] = -1;
+        rules[0] = -1;
+        indices.putIfAbsent(values[0], 0);
+        size++;
+        // values are found in order of depth, so this is breadth-first
+        for (int node = 0; node < size && depths[node] < moves; node++) {
+            for (int rule = 0; rule < packed.numRules(); rule++) {
+                int next = packed.nextValue(values[node], rule);
+                if (next == PackedLevel.INVALID_VALUE) continue;
+                if (indices.get(next) != LongIntMap.MISSING) continue;
+                if (size == values.length) {
+                    values = Arrays.copyOf(values, size * 2);
+                    depths = Arrays.copyOf(depths, size * 2);
+                    parents = Arrays.copyOf(parents, size * 2);
+                    rules = Arrays.copyOf(rules, size * 2);
+                }
+                values[size] = next;
+                depths[size] = depths[node] + 1;
+                parents[size] = node;
+                rules[size] = rule;
+                indices.putIfAbsent(next, size);
+                size++;
+            }
+        }
+        return new ReachabilityMap(
+            level.getValue(),
+            moves,
+            ruleStrings(level.getRules()),
+            level.getPortals(),
+            Arrays.copyOf(values, size),
+            Arrays.copyOf(depths, size),
+            Arrays.copyOf(parents, size),
+            Arrays.copyOf(rules, size)
+        );
+    }
+
+    /** @return the number of reachable values, including the start */
+    public int size() {
+        return VALUES.length;
+    }
+
+    /**
+     * Whether this map answers for the given level: it has the same start,
+     * rules, and portals, and at most as many moves as this was made with.
+     * The goal can be anything.
+     */
+    public boolean covers(CalculatorGame level) {
+        return level.getValue() == START
+            && level.getMovesLeft() <= MOVES
+            && Arrays.equals(ruleStrings(level.getRules()), RULE_STRINGS)
+            && Arrays.equals(level.getPortals(), PORTALS);
+    }
+
+    /**
+     * @return the fewest moves from the start to the given value, or -1 if it
+     * can't be reached within the moves this was made with. The start itself
+     * takes 0 moves.
+     */
+    public int getDistance(int value) {
+        int index = INDICES.get(value);
+        return index == LongIntMap.MISSING ? -1 : DEPTHS[index];
+    }
+
+    /**
+     * Finds a shortest solution to a level this {@link #covers}, the same
+     * length as the shortest solution from
+     * {@link com.mathwithmark.calculatorgamesolver.brutesolver.Solver#getAllSolutions}
+     * @return a list of transition strings, or null if the level is unsolveable
+     * @throws IllegalArgumentException if this doesn't cover the level
+     */
+    public List<String> getShortestSolution(CalculatorGame level)
+        throws IllegalArgumentException {
+        if (!covers(level)) {
+            throw new IllegalArgumentException("Not covered: " + level);
+        }
+        int index = INDICES.get(level.getGoal());
+        // Every solution to the start would repeat the start
+        if (index == LongIntMap.MISSING || index == 0) return null;
+        if (DEPTHS[index] > level.getMovesLeft()) return null;
+        List<String> transitionStrings = new ArrayList<>();
+        for (; PARENTS[index] >= 0; index = PARENTS[index]) {
+            transitionStrings.add(RULE_STRINGS[RULE_INDICES[index]]);
+        }
+        Collections.reverse(transitionStrings);
+        return transitionStrings;
+    }
+
+    /**
+     * Writes this map to the given stream, which is left open
+     * @throws IOException if the stream can't be written or the level has
+     * more rules than can be written
+     */
+    public void write(OutputStream stream) throws IOException {
+        if (RULE_STRINGS.length > MAX_WRITTEN_RULES) {
+            throw new IOException(
+                "Too many rules to write: " + RULE_STRINGS.length
+            );
+        }
+        DataOutputStream out = new DataOutputStream(stream);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(START);
+        out.writeInt(MOVES);
+        out.writeInt(RULE_STRINGS.length);
+        for (String ruleString : RULE_STRINGS) out.writeUTF(ruleString);
+        out.writeBoolean(PORTALS != null);
+        if (PORTALS != null) {
+            out.writeInt(PORTALS[0]);
+            out.writeInt(PORTALS[1]);
+        }
+        out.writeInt(VALUES.length);
+        for (int i = 0; i < VALUES.length; i++) {
+            out.writeInt(VALUES[i]);
+            out.writeInt(PARENTS[i]);
+            out.writeShort(RULE_INDICES[i]);
+        }
+        out.flush();
+    }
+
+    /**
+     * Reads a map written by {@link #write}. The stream is left open.
+     * @throws IOException if the stream can't be read or doesn't hold a map
+     */
+    public static ReachabilityMap read(InputStream stream) throws IOException {
+        DataInputStream in = new DataInputStream(stream);
+        if (in.readInt() != MAGIC) throw new IOException("Not a map");
+        int version = in.readInt();
+        if (version != VERSION) {
+            throw new IOException("Unknown map version " + version);
+        }
+        int start = in.readInt();
+        int moves = in.readInt();
+        int numRules = in.readInt();
+        if (numRules < 0) throw new IOException("Bad rule count " + numRules);
+        String[] ruleStrings = new String[numRules];
+        for (int i = 0; i < ruleStrings.length; i++) {
+            ruleStrings[i] = in.readUTF();
+        }
+        int[] portals = null;
+        if (in.readBoolean()) {
+            portals = new int[2];
+            portals[0] = in.readInt();
+            portals[1] = in.readInt();
+        }
+        int size = in.readInt();
+        // every map has at least its start
+        if (size < 1) throw new IOException("Bad map size " + size);
+        int[] values = new int[size], depths = new int[size];
+        int[] parents = new int[size], rules = new int[size];
+        for (int i = 0; i < size; i++) {
+            values[i] = in.readInt();
+            parents[i] = in.readInt();
+            rules[i] = in.readShort();
+            // parents come before their children, and only the start has
+            // neither a parent nor a rule
+            boolean badParent =
+                parents[i] >= i || (i > 0) != (parents[i] >= 0);
+            boolean badRule =
+                rules[i] >= ruleStrings.length || (i > 0) != (rules[i] >= 0);
+            if (badParent || badRule) {
+                throw new IOException("Bad value at " + i);
+            }
+            if (i > 0) depths[i] = depths[parents[i]] + 1;
+        }
+        return new ReachabilityMap(
+            start,
+            moves,
+            ruleStrings,
+            portals,
+            values,
+            depths,
+            parents,
+            rules
+        );
+    }
+
+    /** @return the transition string of each rule */
+    private static String[] ruleStrings(Rule[] rules) {
+        String[] ruleStrings = new String[rules.length];
+        for (int i = 0; i < rules.length; i++) {
+            ruleStrings[i] = CalculatorGame.transitionString(rules[i]);
+        }
+        return ruleStrings;
+    }
+}
@@ -0,0 +1,222 @@
+package com.mathwithmark.calculatorgamesolver.calculatorgame;
+
+/**
+ * Facts about rules, found from the rules and values alone without applying
+ * the rules: which rules commute, which change nothing, and which undo
+ * others
+ */
+class RuleAlgebra {
+    /** Operands at most this large never overflow when multiplying a value */
+    private static final int MAX_SAFE_FACTOR = 999;
+
+    /**
+     * Whether two different rules commute in a level: applying them in either
+     * order to any value gives the same value, and one order is valid iff the
+     * other is. Rules that change other rules never commute.
+     * @param portals whether the level has portals
+     */
+    static boolean commute(Rule first, Rule second, boolean portals) {
+        if (first.equals(second)) return false;
+        int operator1 = first.getOperator(), operator2 = second.getOperator();
+        // Changing the sign commutes with every odd rule, even with portals
+        if (operator1 == Rule.SIGN) return isOdd(second);
+        if (operator2 == Rule.SIGN) return isOdd(first);
+        if (portals) return false;
+
+        if (isAddition(operator1) && isAddition(operator2)) {
+            // Otherwise, one order could leave the range in between
+            return Long.signum(delta(first))
+                * Long.signum(delta(second)) >= 0;
+        }
+        if (operator1 == Rule.MULTIPLY && operator2 == Rule.MULTIPLY) {
+            return isSafeFactor(first) && isSafeFactor(second);
+        }
+        if (operator1 == Rule.DIVIDE && operator2 == Rule.DIVIDE) {
+            return operand(first) != 0 && operand(second) != 0;
+        }
+        if (operator1 == Rule.INVERSE_TEN) return isDigitMove(operator2);
+        if (operator2 == Rule.INVERSE_TEN) return isDigitMove(operator1);
+        return false;
+    }
+
+    /**
+     * Whether applying the rule to the value leaves the level unchanged
+     * @param stored whether the level's Store rule holds a value
+     * @param store the value the Store rule holds, if any
+     */
+    static boolean isNoOp(Rule rule, int value, boolean stored, int store) {
+        if (value == Integer.MIN_VALUE) return false;
+        int magnitude = Math.abs(value);
+        switch (rule.getOperator()) {
+            case Rule.ADD:
+            case Rule.SUBTRACT:
+                return operand(rule) == 0;
+            case Rule.MULTIPLY:
+                return operand(rule) == 1 || value == 0;
+            case Rule.DIVIDE:
+                return operand(rule) == 1 || (value == 0 && operand(rule) != 0);
+            case Rule.POWER:
+                return operand(rule) == 1
+                    || value == 1
+                    || (value == 0 && operand(rule) > 0);
+            case Rule.PAD:
+                return value == 0 && operand(rule) == 0;
+            case Rule.SIGN:
+            case Rule.DELETE:
+            case Rule.MIRROR:
+                return value == 0;
+            case Rule.SUM:
+                return magnitude < 10;
+            case Rule.REVERSE:
+                return reverse(magnitude) == magnitude;
+            case Rule.SHIFT_RIGHT:
+            case Rule.SHIFT_LEFT:
+                return allDigitsAre(magnitude, magnitude % 10, magnitude % 10);
+            case Rule.INVERSE_TEN:
+                // 0 and 5 are their own inverses
+                return allDigitsAre(magnitude, 0, 5);
+            case Rule.CONVERT:
+                ConvertRule convertRule = (ConvertRule) rule;
+                return convertRule
+                    .getFromString()
+                    .equals(convertRule.getToString());
+            case Rule.UPDATE_STORE:
+                return stored && store == value;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Whether applying the rule to the value gives back the previous value,
+     * when the previous rule took the previous value to the value
+     * @param portals whether the level has portals
+     */
+    static boolean undoes(
+        Rule rule,
+        Rule previous,
+        int value,
+        int previousValue,
+        boolean portals
+    ) {
+        if (value == Integer.MIN_VALUE) return false;
+        int operator = rule.getOperator();
+        int previousOperator = previous.getOperator();
+        if (isAddition(operator) && isAddition(previousOperator)) {
+            // Portals may have changed the sum
+            return delta(rule) == -delta(previous)
+                && (long) value - previousValue == delta(previous);
+        }
+        if (operator == Rule.DIVIDE && previousOperator == Rule.MULTIPLY) {
+            // Portals or overflow may have changed the product
+            int factor = operand(previous);
+            return factor != 0
+                && operand(rule) == factor
+                && (long) previousValue * factor == value;
+        }
+        if (operator == Rule.DELETE && previousOperator == Rule.PAD) {
+            return !portals && operand(previous) >= 0 && operand(previous) < 10;
+        }
+        if (operator != previousOperator) {
+            boolean oppositeShifts =
+                operator == Rule.SHIFT_LEFT
+                    && previousOperator == Rule.SHIFT_RIGHT
+                    || operator == Rule.SHIFT_RIGHT
+                        && previousOperator == Rule.SHIFT_LEFT;
+            // unless the previous shift made a leading zero
+            return oppositeShifts && sameLength(value, previousValue);
+        }
+        switch (operator) {
+            case Rule.SIGN:
+            case Rule.INVERSE_TEN:
+                return true; // involutions
+            case Rule.REVERSE:
+                // unless the previous value ended with zeros
+                return sameLength(value, previousValue);
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Whether the rule is odd: applying it to the negation of a value gives
+     * the negation of applying it to the value, and both are valid or
+     * neither is
+     */
+    private static boolean isOdd(Rule rule) {
+        switch (rule.getOperator()) {
+            case Rule.MULTIPLY:
+                return Math.abs(operand(rule)) <= MAX_SAFE_FACTOR;
+            case Rule.DIVIDE:
+                return operand(rule) != 0;
+            case Rule.CONVERT:
+                // Converting "0" changes 0, the one value equal to its negation
+                return !((ConvertRule) rule).getFromString().equals("0");
+            case Rule.SIGN:
+            case Rule.DELETE:
+            case Rule.REVERSE:
+            case Rule.SUM:
+            case Rule.SHIFT_RIGHT:
+            case Rule.SHIFT_LEFT:
+            case Rule.MIRROR:
+            case Rule.INVERSE_TEN:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /** Whether the operator adds a constant to the value */
+    private static boolean isAddition(int operator) {
+        return operator == Rule.ADD || operator == Rule.SUBTRACT;
+    }
+
+    /** @return the amount an Add or Subtract rule adds to the value */
+    private static long delta(Rule rule) {
+        long operand = operand(rule);
+        return rule.getOperator() == Rule.ADD ? operand : -operand;
+    }
+
+    /** Whether a Multiply rule never overflows and never makes 0 */
+    private static boolean isSafeFactor(Rule rule) {
+        int factor = operand(rule);
+        return factor != 0 && Math.abs(factor) <= MAX_SAFE_FACTOR;
+    }
+
+    /**
+     * Whether the operator only moves the digits of the value around, keeping
+     * zeros where they are relative to the other digits
+     */
+    private static boolean isDigitMove(int operator) {
+        return operator == Rule.REVERSE
+            || operator == Rule.MIRROR
+            || operator == Rule.SHIFT_LEFT
+            || operator == Rule.SHIFT_RIGHT;
+    }
+
+    /** Whether two values have the same number of digits */
+    private static boolean sameLength(int value, int other) {
+        return Helpers.numDigits(value) == Helpers.numDigits(other);
+    }
+
+    /** @return the nonnegative value with its digits reversed */
+    private static int reverse(int value) {
+        int reversed = 0;
+        for (; value > 0; value /= 10) reversed = 10 * reversed + value % 10;
+        return reversed;
+    }
+
+    /** Whether every digit of the nonnegative value is one of two digits */
+    private static boolean allDigitsAre(int value, int digit1, int digit2) {
+        do {
+            int digit = value % 10;
+            if (digit != digit1 && digit != digit2) return false;
+            value /= 10;
+        } while (value > 0);
+        return true;
+    }
+
+    private static int operand(Rule rule) {
+        return ((OneRule) rule).getOperand();
+    }
+}
@@ -0,0 +1,134 @@
+package com.mathwithmark.calculatorgamesolver.calculatorgame;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Parses rule strings in a single pass, without regular expressions
+ */
+class RuleParser {
+    private static final String CONVERT_STRING =
+        Config.OPERATOR_STRINGS[Rule.CONVERT];
+    private static final String INVERSE_TEN_STRING =
+        Config.OPERATOR_STRINGS[Rule.INVERSE_TEN];
+
+    /** The operator of each operator string, by the string in lower case */
+    private static final Map<String, Integer> OPERATORS = new HashMap<>();
+    static {
+        for (int i = 0; i < Config.OPERATOR_STRINGS.length; i++) {
+            OPERATORS.putIfAbsent(Config.OPERATOR_STRINGS[i].toLowerCase(), i);
+        }
+    }
+
+    /**
+     * @return the rule of the given string. A Convert rule is digits, the
+     * Convert string, and digits. Otherwise, the operator is everything before
+     * the first operand, which is digits maybe after a minus sign.
+     * @throws RuntimeException if the string isn't a rule
+     */
+    static Rule parse(String ruleString) {
+        int length = ruleString.length();
+        int arrowIndex = -1;
+        boolean isConvertRule = false, isInverseTenRule = false;
+        int operandStart = -1, operandEnd = -1;
+        for (int i = 0; i < length; i++) {
+            char c = ruleString.charAt(i);
+            if (ruleString.startsWith(CONVERT_STRING, i)) {
+                if (arrowIndex < 0) arrowIndex = i;
+                int after = i + CONVERT_STRING.length();
+                isConvertRule |=
+                    i > 0
+                        && isDigit(ruleString.charAt(i - 1))
+                        && after < length
+                        && isDigit(ruleString.charAt(after));
+            }
+            if (ruleString.startsWith(INVERSE_TEN_STRING, i)) {
+                isInverseTenRule = true;
+            }
+            if (operandStart < 0) {
+                boolean negative =
+                    c == '-' && i + 1 < length
+                        && isDigit(ruleString.charAt(i + 1));
+                if (negative || isDigit(c)) operandStart = i;
+            } else if (operandEnd < 0 && !isDigit(c)) {
+                operandEnd = i;
+            }
+        }
+        if (operandStart >= 0 && operandEnd < 0) operandEnd = length;
+
+        if (isConvertRule) {
+            String op1 = ruleString.substring(0, arrowIndex);
+            String op2 =
+                ruleString.substring(arrowIndex + CONVERT_STRING.length());
+            return Rule.of(Rule.CONVERT, op1, op2);
+        }
+        if (isInverseTenRule) return Rule.of(Rule.INVERSE_TEN);
+
+        // Don't accidentally pad a negative
+        if (operandStart == 0 && ruleString.charAt(0) == '-') {
+            // skip the minus sign in the operand
+            int operand = Integer.parseInt(ruleString.substring(1));
+            return Rule.of(Rule.SUBTRACT, operand); // it was for subtraction
+        }
+        if (length == 0) throw new RuntimeException("Empty rule string");
+
+        // We have a basic rule of the form "[operator][op1?]"
+        String operatorString =
+            operandStart >= 0
+                ? ruleString.substring(0, operandStart)
+                : ruleString;
+        int operator = toOperator(operatorString);
+        int operand =
+            operandStart >= 0
+                ? parseInt(ruleString, operandStart, operandEnd)
+                : 0;
+        return Rule.of(operator, operand);
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    /**
+     * @return the integer of the given part of the string, digits maybe after
+     * a minus sign
+     * @throws NumberFormatException if the integer doesn't fit in an int
+     */
+    private static int parseInt(String string, int start, int end)
+        throws NumberFormatException {
+        boolean negative = string.charAt(start) == '-';
+        long value = 0;
+        for (int i = negative ? start + 1 : start; i < end; i++) {
+            value = value * 10 + (string.charAt(i) - '0');
+            if (value > -(long) Integer.MIN_VALUE) {
+                throw new NumberFormatException(
+                    "For input string: \"" + string.substring(start, end) + "\""
+                );
+            }
+        }
+        value = negative ? -value : value;
+        if (value > Integer.MAX_VALUE) {
+            throw new NumberFormatException(
+                "For input string: \"" + string.substring(start, end) + "\""
+            );
+        }
+        return (int) value;
+    }
+
+    /**
+     * Transform given synonym into the method name of the corresponding
+     * operator
+     *
+     * @param synonym a potential synonym for an operator method name
+     * @return the method name if the synonym is recognized
+     * @throws RuntimeException when synonym is not recognized
+     */
+    private static int toOperator(String synonym) {
+        synonym = synonym.trim().toLowerCase();
+        Integer operator = OPERATORS.get(synonym);
+        if (operator == null) {
+            throw new RuntimeException("Invalid operator: " + synonym);
+        }
+        return operator;
+    }
+}
@@ -0,0 +1,282 @@
+package com.mathwithmark.calculatorgamesolver.calculatorgame;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.mathwithmark.calculatorgamesolver.brutesolver.Solver;
+
+/**
+ * Remembers the solutions of levels, so that solving a level again is a
+ * lookup. Levels are identified by a fingerprint of their value, goal, moves,
+ * rules in sorted order, and portals, so levels that only list their rules in
+ * a different order share an entry. Solutions are always returned in the
+ * order {@link Solver#getAllSolutions} gives for the level asked about.
+ *
+ * The most recently used levels are kept in memory. If the cache has a
+ * directory, every level solved is also appended to a log file there, which
+ * later runs read back. Several JVMs can share a directory: the log is locked
+ * while it is read or written, and each one reads what the others appended.
+ *
+ * The cache is safe to use from several threads.
+ */
+public class SolutionCache implements AutoCloseable {
+    /** The default most levels kept in memory */
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    /** The name of the log file in the cache's directory */
+    static final String LOG_FILE_NAME = "solutions.log";
+
+    /** The most levels kept in memory */
+    private final int CAPACITY;
+    /** Solutions by fingerprint, least recently used first */
+    private final LinkedHashMap<String, CachedSolutions> MEMORY;
+    /** The log shared with other runs, or null if the cache is memory only */
+    private final SolutionLog LOG;
+
+    private long memoryHits = 0, diskHits = 0, misses = 0, evictions = 0;
+
+    /**
+     * Creates a cache that keeps at most the given number of levels in
+     * memory, and nothing on disk
+     */
+    public SolutionCache(int capacity) {
+        CAPACITY = capacity;
+        MEMORY = new LinkedHashMap<>(16, 0.75f, true);
+        LOG = null;
+    }
+
+    /**
+     * Creates a cache that keeps at most the given number of levels in memory,
+     * and every level in a log in the given directory
+     * @param directory created if it doesn't exist
+     * @throws IOException if the directory or log can't be opened
+     */
+    public SolutionCache(int capacity, String directory) throws IOException {
+        CAPACITY = capacity;
+        MEMORY = new LinkedHashMap<>(16, 0.75f, true);
+        File dir = new File(directory);
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Can't make directory " + directory);
+        }
+        LOG = new SolutionLog(new File(dir, LOG_FILE_NAME));
+    }
+
+    /**
+     * @return every solution to the level, in the order of
+     * {@link Solver#getAllSolutions}, solving it only if it isn't cached
+     * @throws UncheckedIOException if the log can't be read or written
+     */
+    public List<List<String>> getAllSolutions(CalculatorGame level)
+        throws UncheckedIOException {
+        List<List<String>> solutions = get(level);
+        if (solutions != null) return solutions;
+        solutions = Solver.getAllSolutions(level);
+        put(level, solutions);
+        return solutions;
+    }
+
+    /**
+     * @return the cached solutions to the level, in the order of
+     * {@link Solver#getAllSolutions}, or null if it isn't cached
+     * @throws UncheckedIOException if the log can't be read
+     */
+    public List<List<String>> get(CalculatorGame level)
+        throws UncheckedIOException {
+        String fingerprint = fingerprint(level);
+        CachedSolutions entry;
+        synchronized (this) {
+            entry = MEMORY.get(fingerprint);
+            if (entry != null) {
+                memoryHits++;
+            } else if (LOG != null) {
+                entry = LOG.get(fingerprint);
+                if (entry != null) {
+                    diskHits++;
+                    remember(fingerprint, entry);
+                }
+            }
+            if (entry == null) {
+                misses++;
+                return null;
+            }
+        }
+        if (entry.RULE_ORDER.equals(ruleOrder(level))) return entry.SOLUTIONS;
+        return inOrderFor(level, entry.SOLUTIONS);
+    }
+
+    /**
+     * Caches the given solutions to the level, which must be all of them
+     * @throws UncheckedIOException if the log can't be written
+     */
+    public void put(CalculatorGame level, List<List<String>> solutions)
+        throws UncheckedIOException {
+        String fingerprint = fingerprint(level);
+        List<List<String>> copy = new ArrayList<>();
+        for (List<String> solution : solutions) {
+            copy.add(Collections.unmodifiableList(new ArrayList<>(solution)));
+        }
+        CachedSolutions entry =
+            new CachedSolutions(
+                ruleOrder(level),
+                Collections.unmodifiableList(copy)
+            );
+        synchronized (this) {
+            remember(fingerprint, entry);
+            if (LOG != null) LOG.put(fingerprint, entry);
+        }
+    }
+
+    /** Keeps the entry in memory, forgetting the least recently used */
+    private void remember(String fingerprint, CachedSolutions entry) {
+        MEMORY.put(fingerprint, entry);
+        if (MEMORY.size() > CAPACITY) {
+            MEMORY.remove(MEMORY.keySet().iterator().next());
+            evictions++;
+        }
+    }
+
+    /** @return the number of lookups answered from memory */
+    public synchronized long getMemoryHits() {
+        return memoryHits;
+    }
+
+    /** @return the number of lookups answered from the log */
+    public synchronized long getDiskHits() {
+        return diskHits;
+    }
+
+    /** @return the number of lookups of levels that weren't cached */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /** @return the number of levels dropped from memory to make room */
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /** @return the number of levels in memory */
+    public synchronized int size() {
+        return MEMORY.size();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (LOG != null) LOG.close();
+    }
+
+    /** @return the transition string of each rule of the level, in order */
+    private static List<String> ruleOrder(CalculatorGame level) {
+        List<String> ruleOrder = new ArrayList<>();
+        for (Rule rule : level.getRules()) {
+            ruleOrder.add(CalculatorGame.transitionString(rule));
+        }
+        return ruleOrder;
+    }
+
+    /**
+     * @return a string that is equal for two levels iff they have the same
+     * value, goal, moves, rules in any order, and portals
+     */
+    public static String fingerprint(CalculatorGame level) {
+        List<String> ruleStrings = new ArrayList<>();
+        for (Rule rule : level.getRules()) {
+            // Added for every Store rule, see CalculatorGame.sanitize
+            if (rule.getOperator() == Rule.UPDATE_STORE) continue;
+            String ruleString = rule.toString();
+            if (rule instanceof StoreRule && ((StoreRule) rule).INITIALIZED) {
+                ruleString += " " + ((StoreRule) rule).getOperand();
+            }
+            ruleStrings.add(ruleString);
+        }
+        Collections.sort(ruleStrings);
+        return String
+            .format(
+                "%d %d %d %s %s",
+                level.getValue(),
+                level.getGoal(),
+                level.getMovesLeft(),
+                ruleStrings,
+                Arrays.toString(level.getPortals())
+            );
+    }
+
+    /**
+     * Orders solutions the way {@link Solver#getAllSolutions} would for the
+     * given level. That search finds the winning moves from a state first, in
+     * rule order, then the solutions through each successor, from the last
+     * rule to the first. Levels whose rules are in a different order share a
+     * fingerprint, but not an order.
+     */
+    private static List<List<String>> inOrderFor(
+        CalculatorGame level,
+        List<List<String>> solutions
+    ) {
+        Map<List<String>, int[]> ruleIndices = new HashMap<>();
+        for (List<String> solution : solutions) {
+            ruleIndices.put(solution, ruleIndices(level, solution));
+        }
+        List<List<String>> ordered = new ArrayList<>(solutions);
+        ordered
+            .sort(
+                Comparator
+                    .comparing(
+                        ruleIndices::get,
+                        SolutionCache::compareSearchOrder
+                    )
+            );
+        return ordered;
+    }
+
+    /**
+     * @return the index of the rule used for each move of the solution, in
+     * the rules of the game it was used in
+     */
+    private static int[] ruleIndices(
+        CalculatorGame level,
+        List<String> solution
+    ) {
+        int[] indices = new int[solution.size()];
+        CalculatorGame game = level;
+        for (int move = 0; move < indices.length; move++) {
+            Rule[] rules = game.getRules();
+            int index = 0;
+            while (
+                !CalculatorGame
+                    .transitionString(rules[index])
+                    .equals(solution.get(move))
+            ) {
+                index++;
+            }
+            indices[move] = index;
+            game = rules[index].apply(game);
+        }
+        return indices;
+    }
+
+    /**
+     * Compares two solutions, as rule indices, by when a depth-first search
+     * finds them. Where they first part ways, a solution that ends there comes
+     * before one that goes on, solutions that end there come in rule order,
+     * and solutions that go on come in reverse rule order.
+     */
+    private static int compareSearchOrder(int[] first, int[] second) {
+        for (int i = 0;; i++) {
+            boolean firstEnds = i == first.length - 1;
+            boolean secondEnds = i == second.length - 1;
+            if (firstEnds != secondEnds) return firstEnds ? -1 : 1;
+            int difference = Integer.compare(first[i], second[i]);
+            if (difference != 0) return firstEnds ? difference : -difference;
+            if (firstEnds) return 0;
+        }
+    }
+}
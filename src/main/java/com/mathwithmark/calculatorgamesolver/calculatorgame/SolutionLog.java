@@ -0,0 +1,199 @@
+package com.mathwithmark.calculatorgamesolver.calculatorgame;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only log of solved levels in a file, with an index in memory from
+ * each fingerprint to where its solutions are in the file.
+ *
+ * Each record is the length of its body, the body, and a CRC32 of the body.
+ * The body is the fingerprint, the rule order, and the solutions. A record cut
+ * short by a crash fails its check, and is overwritten by the next record
+ * appended.
+ *
+ * Other processes may append to the same file. Reading takes a shared lock on
+ * the file and appending an exclusive one, and before either, any records
+ * appended since the index was last brought up to date are read into it. File
+ * locks are held by the whole JVM, so logs of the same file in one JVM also
+ * take turns through a lock object for the file.
+ */
+class SolutionLog {
+    /** The lock object of each file in use, by canonical path */
+    private static final Map<String, Object> FILE_LOCKS =
+        new ConcurrentHashMap<>();
+
+    private final Object FILE_LOCK;
+    private final RandomAccessFile FILE;
+    private final FileChannel CHANNEL;
+    /** Where the body of each fingerprint's latest record starts */
+    private final Map<String, Long> INDEX = new HashMap<>();
+    /** Where the records not yet in the index start */
+    private long indexedLength = 0;
+
+    SolutionLog(File file) throws IOException {
+        FILE_LOCK =
+            FILE_LOCKS
+                .computeIfAbsent(file.getCanonicalPath(), path -> new Object());
+        FILE = new RandomAccessFile(file, "rw");
+        CHANNEL = FILE.getChannel();
+    }
+
+    /** @return the logged entry with the fingerprint, or null if none */
+    CachedSolutions get(String fingerprint) throws UncheckedIOException {
+        synchronized (FILE_LOCK) {
+            try {
+                FileLock lock = CHANNEL.lock(0, Long.MAX_VALUE, true);
+                try {
+                    catchUp();
+                    Long position = INDEX.get(fingerprint);
+                    if (position == null) return null;
+                    return entry(readBody(position));
+                } finally {
+                    lock.release();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /** Appends the entry with the given fingerprint to the log */
+    void put(String fingerprint, CachedSolutions entry)
+        throws UncheckedIOException {
+        synchronized (FILE_LOCK) {
+            try {
+                FileLock lock = CHANNEL.lock();
+                try {
+                    append(fingerprint, entry);
+                } finally {
+                    lock.release();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /** Appends the entry, unless another log of the file appended one */
+    private void append(String fingerprint, CachedSolutions entry)
+        throws IOException {
+        catchUp();
+        if (INDEX.containsKey(fingerprint)) return;
+        byte[] body = body(fingerprint, entry);
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        ByteBuffer record = ByteBuffer.allocate(body.length + 12);
+        record.putInt(body.length).put(body).putLong(crc.getValue());
+        record.flip();
+        // Overwrites any record cut short
+        CHANNEL.truncate(indexedLength);
+        while (record.hasRemaining()) {
+            CHANNEL.write(record, indexedLength + record.position());
+        }
+        CHANNEL.force(false);
+        INDEX.put(fingerprint, indexedLength + 4);
+        indexedLength += record.capacity();
+    }
+
+    void close() throws IOException {
+        FILE.close();
+    }
+
+    /**
+     * Adds every whole record after the indexed ones to the index, stopping
+     * at the end of the file or at a record cut short
+     */
+    private void catchUp() throws IOException {
+        long length = CHANNEL.size();
+        ByteBuffer header = ByteBuffer.allocate(4);
+        while (indexedLength + 4 <= length) {
+            header.clear();
+            readFully(header, indexedLength);
+            int bodyLength = header.getInt(0);
+            long end = indexedLength + 4 + bodyLength + 8;
+            if (bodyLength < 0 || end > length) return;
+            byte[] body = readBody(indexedLength + 4);
+            if (body == null) return;
+            String fingerprint =
+                new DataInputStream(new ByteArrayInputStream(body)).readUTF();
+            INDEX.put(fingerprint, indexedLength + 4);
+            indexedLength = end;
+        }
+    }
+
+    /**
+     * @return the body of the record whose body starts at the given position,
+     * or null if it fails its check
+     */
+    private byte[] readBody(long position) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(4);
+        readFully(header, position - 4);
+        ByteBuffer body = ByteBuffer.allocate(header.getInt(0));
+        readFully(body, position);
+        ByteBuffer checksum = ByteBuffer.allocate(8);
+        readFully(checksum, position + body.capacity());
+        CRC32 crc = new CRC32();
+        crc.update(body.array());
+        return crc.getValue() == checksum.getLong(0) ? body.array() : null;
+    }
+
+    private void readFully(ByteBuffer buffer, long position)
+        throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = CHANNEL.read(buffer, position + buffer.position());
+            if (read < 0) throw new IOException("Log ended early");
+        }
+    }
+
+    private static byte[] body(String fingerprint, CachedSolutions entry)
+        throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeUTF(fingerprint);
+        out.writeInt(entry.RULE_ORDER.size());
+        for (String rule : entry.RULE_ORDER) out.writeUTF(rule);
+        out.writeInt(entry.SOLUTIONS.size());
+        for (List<String> solution : entry.SOLUTIONS) {
+            out.writeInt(solution.size());
+            for (String move : solution) out.writeUTF(move);
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static CachedSolutions entry(byte[] body) throws IOException {
+        if (body == null) throw new IOException("Record changed on disk");
+        DataInputStream in =
+            new DataInputStream(new ByteArrayInputStream(body));
+        in.readUTF(); // fingerprint
+        List<String> ruleOrder = new ArrayList<>();
+        for (int i = in.readInt(); i > 0; i--) ruleOrder.add(in.readUTF());
+        List<List<String>> solutions = new ArrayList<>();
+        for (int i = in.readInt(); i > 0; i--) {
+            List<String> solution = new ArrayList<>();
+            for (int j = in.readInt(); j > 0; j--) solution.add(in.readUTF());
+            solutions.add(Collections.unmodifiableList(solution));
+        }
+        return new CachedSolutions(
+            ruleOrder,
+            Collections.unmodifiableList(solutions)
+        );
+    }
+}
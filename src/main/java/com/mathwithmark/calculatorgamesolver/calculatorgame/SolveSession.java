@@ -0,0 +1,209 @@
+package com.mathwithmark.calculatorgamesolver.calculatorgame;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import com.mathwithmark.calculatorgamesolver.brutesolver.Solver;
+import com.mathwithmark.calculatorgamesolver.brutesolver.State;
+
+/**
+ * Solves one level design again and again with different move budgets,
+ * keeping what earlier solves found. Raising the budget from k to k + 1 only
+ * searches the new depth, and a budget at most one already searched is
+ * answered without searching at all.
+ *
+ * Both kinds of level are searched breadth-first, one layer per move, and the
+ * layers are kept between budgets. Levels whose rules just change the value
+ * keep each value once, as {@link ReachabilityMap} does. Other levels keep the
+ * states at the deepest layer searched, each with its path from the start, so
+ * their memory grows with the number of paths rather than values.
+ */
+public class SolveSession {
+    /** The level the session started with */
+    private final CalculatorGame LEVEL;
+    /** The packed level, or null if the level's states are kept instead */
+    private final PackedLevel PACKED;
+
+    /** The fewest moves that win, or -1 if none is known yet */
+    private int shortestLength = -1;
+    /** A solution with the fewest moves, or null if none is known yet */
+    private List<String> shortestSolution = null;
+    /** Every budget up to this many moves is searched */
+    private int searchedMoves = 0;
+    /** Whether more moves can't help, because nothing new can be reached */
+    private boolean exhausted = false;
+
+    // The values found so far breadth-first, as in ReachabilityMap
+    private int[] values = new int[16], parents = new int[16];
+    private int[] rules = new int[16];
+    private int numValues = 0;
+    /** Where the values reached with the most moves searched start */
+    private int layerStart = 0;
+    private LongIntMap indices = new LongIntMap();
+
+    /**
+     * The states reached with the most moves searched, each a path from the
+     * start with no repeated state, or null if values are kept instead
+     */
+    private List<State> frontier = null;
+
+    /** Starts a session for the given level, whose moves are ignored */
+    public SolveSession(CalculatorGame level) {
+        LEVEL = level;
+        CalculatorGame noMoves = withMoves(level, 0);
+        if (BitsetSolver.supports(noMoves)) {
+            PACKED = new PackedLevel(noMoves);
+            values[0] = level.getValue();
+            parents[0] = -1;
+            rules[0] = -1;
+            indices.putIfAbsent(values[0], 0);
+            numValues = 1;
+            // Every solution to the start would repeat the start
+            exhausted = level.getValue() == level.getGoal();
+        } else {
+            PACKED = null;
+            // No state of the search runs out of moves
+            CalculatorGame unlimited = withMoves(level, Integer.MAX_VALUE);
+            frontier = Collections.singletonList(unlimited.rootState());
+        }
+    }
+
+    /**
+     * Whether this session solves the given level: it is the same as the
+     * level the session started with, except maybe for its moves
+     */
+    public boolean covers(CalculatorGame level) {
+        return LEVEL.equalsExceptMoves(level);
+    }
+
+    /** @return how many moves every budget up to has been searched with */
+    public int getSearchedMoves() {
+        return searchedMoves;
+    }
+
+    /**
+     * @return the fewest moves that win the level, if that is at most the
+     * given number of moves, or -1 if the level can't be won with them
+     */
+    public int getShortestLength(int moves) {
+        search(moves);
+        return shortestLength >= 0 && shortestLength <= moves
+            ? shortestLength
+            : -1;
+    }
+
+    /**
+     * Finds a solution with as few moves as possible, the same length as the
+     * shortest solution from {@link Solver#getAllSolutions} for the level with
+     * the given moves
+     * @return a list of transition strings, or null if the level can't be won
+     * with the given moves
+     */
+    public List<String> getShortestSolution(int moves) {
+        if (getShortestLength(moves) < 0) return null;
+        return new ArrayList<>(shortestSolution);
+    }
+
+    /** Searches every budget up to the given moves not yet searched */
+    private void search(int moves) {
+        while (searchedMoves < moves && !exhausted && shortestLength < 0) {
+            if (PACKED == null) {
+                searchStates();
+            } else {
+                searchLayer();
+            }
+        }
+    }
+
+    /**
+     * Searches the next layer of values, the values first reached with one
+     * more move than the layer before
+     */
+    private void searchLayer() {
+        int layerEnd = numValues;
+        for (int node = layerStart; node < layerEnd; node++) {
+            for (int rule = 0; rule < PACKED.numRules(); rule++) {
+                int next = PACKED.nextValue(values[node], rule);
+                if (next == PackedLevel.INVALID_VALUE) continue;
+                if (indices.get(next) != LongIntMap.MISSING) continue;
+                add(next, node, rule);
+            }
+        }
+        layerStart = layerEnd;
+        searchedMoves++;
+        exhausted = layerStart == numValues;
+        int goal = indices.get(PACKED.goal());
+        if (goal != LongIntMap.MISSING && goal >= layerStart) {
+            shortestLength = searchedMoves;
+            shortestSolution = pathTo(goal);
+        }
+    }
+
+    private void add(int value, int parent, int rule) {
+        if (numValues == values.length) {
+            values = Arrays.copyOf(values, numValues * 2);
+            parents = Arrays.copyOf(parents, numValues * 2);
+            rules = Arrays.copyOf(rules, numValues * 2);
+        }
+        values[numValues] = value;
+        parents[numValues] = parent;
+        rules[numValues] = rule;
+        indices.putIfAbsent(value, numValues);
+        numValues++;
+    }
+
+    /** @return the transition strings from the start to the given value */
+    private List<String> pathTo(int index) {
+        List<String> transitionStrings = new ArrayList<>();
+        for (; parents[index] >= 0; index = parents[index]) {
+            transitionStrings
+                .add(PACKED.transitionString(PACKED.root(), rules[index]));
+        }
+        Collections.reverse(transitionStrings);
+        return transitionStrings;
+    }
+
+    /**
+     * Replaces the frontier with the successors of its states that don't
+     * repeat a state of their path, stopping at the first won one
+     */
+    private void searchStates() {
+        List<State> next = new ArrayList<>();
+        searchedMoves++;
+        for (State state : frontier) {
+            for (State successor : state.getSuccessors()) {
+                if (successor.getGame().isWon()) {
+                    shortestLength = searchedMoves;
+                    shortestSolution = pathTo(successor);
+                    frontier = null; // no longer needed
+                    return;
+                }
+                next.add(successor);
+            }
+        }
+        frontier = next;
+        exhausted = next.isEmpty();
+    }
+
+    /** @return the transition strings from the start to the given state */
+    private static List<String> pathTo(State state) {
+        List<String> transitionStrings = new ArrayList<>();
+        for (; state.getParent() != null; state = state.getParent()) {
+            transitionStrings.add(state.getTransitionString());
+        }
+        Collections.reverse(transitionStrings);
+        return transitionStrings;
+    }
+
+    private static CalculatorGame withMoves(CalculatorGame level, int moves) {
+        return new CalculatorGame(
+            level.getValue(),
+            level.getGoal(),
+            moves,
+            level.getRules(),
+            level.getPortals()
+        );
+    }
+}
@@ -0,0 +1,57 @@
+package com.mathwithmark.calculatorgamesolver.calculatorgame;
+
+/**
+ * Operates similar to the PadRule, but must be initialized. Also, it can change
+ * operand
+ */
+class StoreRule extends OneRule {
+    final boolean INITIALIZED;
+
+    @Override
+    public CalculatorGame apply(CalculatorGame game) {
+        return game.successor(applyToValue(game.getValue()));
+    }
+
+    @Override
+    public long applyToValue(int value) {
+        // Do nothing if uninitialized or set to pad negative
+        if (!INITIALIZED || getOperand() < 0) return DigitOps.OUT_OF_RANGE;
+
+        return DigitOps.pad(value, getOperand());
+    }
+
+    StoreRule() {
+        super(STORE, 0);
+        INITIALIZED = false;
+    }
+
+    StoreRule(int value) {
+        super(STORE, value);
+        INITIALIZED = true;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (!super.equals(other)) return false;
+        StoreRule otherStoreRule = (StoreRule) other;
+        return INITIALIZED == otherStoreRule.INITIALIZED;
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode(INITIALIZED, getOperand());
+    }
+
+    /**
+     * @return the hash code of a Store rule, so games can hash their Store
+     * rule without making it
+     */
+    static int hashCode(boolean initialized, int operand) {
+        return 2 * (31 * STORE + operand) + (initialized ? 1 : 0);
+    }
+
+    @Override
+    public String toString() {
+        return Config.OPERATOR_STRINGS[STORE];
+    }
+}
@@ -0,0 +1,167 @@
+package com.mathwithmark.calculatorgamesolver.calculatorgame;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The value each value goes to under one rule that only changes the value,
+ * with portals applied. Values are bounded by {@link PackedLevel#MAX_VALUE},
+ * so the table covers every value, but it is filled lazily in pages: a value
+ * is computed the first time it is looked up, and a page is only allocated
+ * once a value in it is.
+ *
+ * Tables are shared between levels with the same rule and portals, see
+ * {@link #of}. A fully swept table takes megabytes, so shared tables are only
+ * softly held: a table no level uses any more is dropped when memory runs
+ * low, and made again if asked for. Lookups are safe from several threads at
+ * once: an entry is either 0, meaning not yet computed, or its final value,
+ * and a thread that misses a write from another just computes the same value
+ * again.
+ */
+final class TransitionTable {
+    private static final int PAGE_BITS = 12;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+    private static final int NUM_VALUES = 2 * PackedLevel.MAX_VALUE + 1;
+    private static final int NUM_PAGES =
+        (NUM_VALUES + PAGE_SIZE - 1) / PAGE_SIZE;
+
+    /** Stored for values whose successor is invalid */
+    private static final int INVALID_ENTRY = -1;
+
+    /** Tables shared between levels, by rule and portals */
+    private static final Map<TableKey, SharedTable> SHARED =
+        new ConcurrentHashMap<>();
+    /** Where shared tables go once dropped, so their keys can be removed */
+    private static final ReferenceQueue<TransitionTable> DROPPED =
+        new ReferenceQueue<>();
+
+    private final Rule RULE;
+    /** The values after portals, or null if the portals move no digits */
+    private final PortalTable PORTAL_TABLE;
+
+    /**
+     * Each entry is the successor offset by MAX_VALUE + 1, INVALID_ENTRY, or 0
+     * if not yet computed. Pages are null until a value in them is computed.
+     */
+    private final int[][] PAGES = new int[NUM_PAGES][];
+
+    private TransitionTable(Rule rule, int[] portals) {
+        RULE = rule;
+        PORTAL_TABLE =
+            portals == null ? null : PortalTable.of(portals[0], portals[1]);
+    }
+
+    /**
+     * @return the table for the given rule and portals, shared with any level
+     * that asked for the same one before
+     * @param rule a rule that only changes the value
+     * @param portals the portals of the level, or null
+     */
+    static TransitionTable of(Rule rule, int[] portals) {
+        removeDropped();
+        TableKey key = new TableKey(rule, portals);
+        SharedTable shared = SHARED.get(key);
+        TransitionTable table = shared == null ? null : shared.get();
+        if (table != null) return table;
+        table = new TransitionTable(rule, portals);
+        SharedTable added = new SharedTable(key, table);
+        while (true) {
+            shared = SHARED.putIfAbsent(key, added);
+            if (shared == null) return table;
+            TransitionTable other = shared.get();
+            if (other != null) return other;
+            // Dropped since, so replace it
+            if (SHARED.replace(key, shared, added)) return table;
+        }
+    }
+
+    /** Removes the keys of the shared tables that were dropped */
+    private static void removeDropped() {
+        SharedTable dropped;
+        while ((dropped = (SharedTable) DROPPED.poll()) != null) {
+            SHARED.remove(dropped.KEY, dropped);
+        }
+    }
+
+    /**
+     * @return the value the given value goes to, or INVALID_VALUE if applying
+     * the rule to it is invalid
+     * @param value a value from -MAX_VALUE to MAX_VALUE
+     */
+    int nextValue(int value) {
+        int index = value + PackedLevel.MAX_VALUE;
+        int[] page = PAGES[index >>> PAGE_BITS];
+        if (page == null) {
+            page = new int[PAGE_SIZE];
+            PAGES[index >>> PAGE_BITS] = page;
+        }
+        int entry = page[index & (PAGE_SIZE - 1)];
+        if (entry == 0) {
+            int next = computeNextValue(value);
+            entry =
+                next == PackedLevel.INVALID_VALUE
+                    ? INVALID_ENTRY
+                    : next + PackedLevel.MAX_VALUE + 1;
+            page[index & (PAGE_SIZE - 1)] = entry;
+        }
+        if (entry == INVALID_ENTRY) return PackedLevel.INVALID_VALUE;
+        return entry - PackedLevel.MAX_VALUE - 1;
+    }
+
+    /**
+     * Applies the rule and then the portals to the given value, as
+     * {@link CalculatorGame}'s constructor does
+     * @return the new value, or INVALID_VALUE if it has too many digits
+     */
+    private int computeNextValue(int value) {
+        long next = RULE.applyToValue(value);
+        if (next < -PackedLevel.MAX_VALUE || next > PackedLevel.MAX_VALUE) {
+            return PackedLevel.INVALID_VALUE;
+        }
+        if (PORTAL_TABLE == null) return (int) next;
+        return PORTAL_TABLE.apply((int) next);
+    }
+
+    /**
+     * The rule and portals of a shared table. Rules are compared by operator
+     * and operands rather than by string, as different rules can be written
+     * the same way.
+     */
+    private static final class TableKey {
+        final Rule RULE;
+        /** The portals, or null */
+        final int[] PORTALS;
+
+        TableKey(Rule rule, int[] portals) {
+            RULE = rule;
+            PORTALS = portals == null ? null : portals.clone();
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof TableKey)) return false;
+            TableKey otherKey = (TableKey) other;
+            return otherKey.RULE.equals(RULE)
+                && Arrays.equals(otherKey.PORTALS, PORTALS);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * RULE.hashCode() + Arrays.hashCode(PORTALS);
+        }
+    }
+
+    /** A softly held shared table, with its key for once it is dropped */
+    private static final class SharedTable
+        extends SoftReference<TransitionTable> {
+        final TableKey KEY;
+
+        SharedTable(TableKey key, TransitionTable table) {
+            super(table, DROPPED);
+            KEY = key;
+        }
+    }
+}
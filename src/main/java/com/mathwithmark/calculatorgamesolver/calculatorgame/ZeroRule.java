@@ -0,0 +1,18 @@
+package com.mathwithmark.calculatorgamesolver.calculatorgame;
+
+class ZeroRule extends Rule {
+    /**
+     * Creates a new ZeroRule from the given operator
+     * @param operator must be an operator that corresponds to a rule with zero
+     * operands
+     */
+    ZeroRule(int operator) {
+        super(operator);
+    }
+
+    @Override
+    public CalculatorGame apply(CalculatorGame game) {
+        if (getOperator() == UPDATE_STORE) return game.storeSuccessor();
+        return game.successor(applyToValue(game.getValue()));
+    }
+}
@@ -0,0 +1,403 @@
+package com.mathwithmark.calculatorgamesolver.main;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import com.mathwithmark.calculatorgamesolver.brutesolver.BatchSolver;
+import com.mathwithmark.calculatorgamesolver.brutesolver.Heuristic;
+import com.mathwithmark.calculatorgamesolver.brutesolver.IdaStarSolver;
+import com.mathwithmark.calculatorgamesolver.brutesolver.ParallelSolver;
+import com.mathwithmark.calculatorgamesolver.brutesolver.Solver;
+import com.mathwithmark.calculatorgamesolver.calculatorgame.CalculatorGame;
+import com.mathwithmark.calculatorgamesolver.calculatorgame.CompiledSolver;
+import com.mathwithmark.calculatorgamesolver.calculatorgame.Helpers;
+import com.mathwithmark.calculatorgamesolver.calculatorgame.LevelHeuristic;
+import com.mathwithmark.calculatorgamesolver.calculatorgame.PackedSolver;
+import com.mathwithmark.calculatorgamesolver.calculatorgame.Rule;
+import com.mathwithmark.calculatorgamesolver.yaml.Serialize;
+
+/**
+ * Times the solvers on the shipped levels. Each measurement is the best of
+ * several runs, after warmup runs that let the JIT compile the solvers.
+ *
+ * Arguments, all optional: the number of deepest levels to use (default 10),
+ * and the parallelism of the parallel solver (default one thread per
+ * available processor).
+ *
+ * Also solves every shipped level as one batch with
+ * {@link CompiledSolver#solve}, and compares the wall time to the time of the
+ * slowest level alone, times the levels that can be compiled and a larger one
+ * with their rules interpreted and compiled, compares the states expanded by
+ * IDA* with and without a heuristic, and times each operator applied to many
+ * values, a level where most moves make too many digits, and a level whose
+ * moves change its rules.
+ */
+public class Benchmark {
+    private static final int WARMUP_RUNS = 3;
+    private static final int MEASURED_RUNS = 5;
+
+    /** A rule of each operator timed by {@link #rules()} */
+    private static final String[] RULE_STRINGS = {
+        "+3",
+        "-3",
+        "*3",
+        "/3",
+        "3",
+        "+/-",
+        "<<",
+        "1=>2",
+        "^2",
+        "Reverse",
+        "SUM",
+        "Shift >",
+        "< Shift",
+        "Mirror",
+        "[+]1",
+        "Inv10",
+    };
+    /** How many times {@link #rules()} applies each rule to each value */
+    private static final int RULE_REPEATS = 200;
+
+    /** The rules of the level timed by {@link #metaAdd()} */
+    private static final String[] META_ADD_RULE_STRINGS = {
+        "+2", "*3", "1", "[+]1", "Store",
+    };
+
+    /** The rules of the larger level timed by {@link #compiled()} */
+    private static final String[] COMPILED_RULE_STRINGS = {
+        "+3", "*2", "-7", "Reverse", "<<", "+/-", "1=>2",
+    };
+    /** The moves of the larger level timed by {@link #compiled()} */
+    private static final int COMPILED_MOVES = 10;
+
+    /** The rules of the level timed by {@link #overflow()} */
+    private static final String[] OVERFLOW_RULE_STRINGS = {
+        "Mirror", "^3", "25", "+1", "Reverse",
+    };
+
+    public static void main(String[] args) {
+        int numLevels = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        int parallelism =
+            args.length > 1
+                ? Integer.parseInt(args[1])
+                : Runtime.getRuntime().availableProcessors();
+        List<CalculatorGame> levels = deepestLevels(numLevels);
+
+        long sequential = bestNanos(() -> {
+            for (CalculatorGame level : levels) Solver.getAllSolutions(level);
+        });
+        long oneThread = parallelNanos(levels, 1);
+        long parallel = parallelNanos(levels, parallelism);
+
+        System.out.printf("Deepest %d levels%n", levels.size());
+        report("Sequential", sequential, sequential);
+        report("Parallel (1 thread)", oneThread, sequential);
+        report("Parallel (" + parallelism + " threads)", parallel, sequential);
+
+        batch();
+        compiled();
+        shortest(levels);
+        rules();
+        overflow();
+        metaAdd();
+    }
+
+    /**
+     * Solves a level whose Meta Add and Store rules change the rules on many
+     * moves
+     */
+    private static void metaAdd() {
+        CalculatorGame level =
+            new CalculatorGame(
+                1,
+                0,
+                7,
+                Helpers.rules(META_ADD_RULE_STRINGS),
+                null
+            );
+        long nanos = bestNanos(() -> Solver.getAllSolutions(level));
+        System.out.println("Level with Meta Add and Store");
+        report("Solver", nanos, nanos);
+    }
+
+    /**
+     * Solves a level whose rules mostly make values with too many digits, so
+     * that most successors are invalid
+     */
+    private static void overflow() {
+        CalculatorGame level =
+            new CalculatorGame(
+                1,
+                0,
+                8,
+                Helpers.rules(OVERFLOW_RULE_STRINGS),
+                null
+            );
+        long nanos = bestNanos(() -> Solver.getAllSolutions(level));
+        System.out.println("Level with mostly invalid successors");
+        report("Solver", nanos, nanos);
+    }
+
+    /**
+     * Applies a rule of each operator to many values, alone and in games
+     * without and with portals, and reports the time each application takes
+     */
+    private static void rules() {
+        List<CalculatorGame> games = new ArrayList<>();
+        List<CalculatorGame> portalGames = new ArrayList<>();
+        int[] portals = {
+            4, 1
+        };
+        for (int value = -99_999; value <= 99_999; value += 97) {
+            games.add(new CalculatorGame(value, 0, 1, new Rule[0], null));
+            portalGames
+                .add(new CalculatorGame(value, 0, 1, new Rule[0], portals));
+        }
+        System.out
+            .println("Rule applications to values, games, and portal games");
+        for (String ruleString : RULE_STRINGS) {
+            Rule rule = Rule.of(ruleString);
+            System.out
+                .printf(
+                    "%-30s %10.1f ns %10.1f ns %10.1f ns%n",
+                    ruleString,
+                    applyToValueNanos(rule, games),
+                    applyNanos(rule, games),
+                    applyNanos(rule, portalGames)
+                );
+        }
+    }
+
+    /**
+     * @return the time applying the rule to the value of one of the games
+     * takes, without making a game
+     */
+    private static double applyToValueNanos(
+        Rule rule,
+        List<CalculatorGame> games
+    ) {
+        int[] values = new int[games.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = games.get(i).getValue();
+        }
+        long[] sum = new long[1]; // so the applications aren't optimized away
+        long nanos = bestNanos(() -> {
+            for (int i = 0; i < RULE_REPEATS; i++) {
+                for (int value : values) sum[0] += rule.applyToValue(value);
+            }
+        });
+        return (double) nanos / RULE_REPEATS / values.length;
+    }
+
+    /** @return the time applying the rule to one of the games takes */
+    private static double applyNanos(Rule rule, List<CalculatorGame> games) {
+        int[] valid = new int[1]; // so the applications aren't optimized away
+        long nanos = bestNanos(() -> {
+            for (int i = 0; i < RULE_REPEATS; i++) {
+                for (CalculatorGame game : games) {
+                    if (rule.apply(game) != null) valid[0]++;
+                }
+            }
+        });
+        return (double) nanos / RULE_REPEATS / games.size();
+    }
+
+    /**
+     * Finds the shortest solutions to the levels with and without a heuristic,
+     * and reports the timings and the number of states expanded. The values
+     * expanded to make distance tables are counted with the states.
+     */
+    private static void shortest(List<CalculatorGame> levels) {
+        long iterative = bestNanos(() -> {
+            for (CalculatorGame level : levels) {
+                Solver.getShortestSolutions(level);
+            }
+        });
+        long[] blindExpanded = new long[1], informedExpanded = new long[1];
+        long[] tableExpanded = new long[1];
+        long blind = bestNanos(() -> {
+            blindExpanded[0] = 0;
+            for (CalculatorGame level : levels) {
+                IdaStarSolver solver = new IdaStarSolver(Heuristic.NONE);
+                solver.getShortestSolutions(level);
+                blindExpanded[0] += solver.getExpandedNodes();
+            }
+        });
+        long informed = bestNanos(() -> {
+            informedExpanded[0] = 0;
+            for (CalculatorGame level : levels) {
+                IdaStarSolver solver =
+                    new IdaStarSolver(new LevelHeuristic(level));
+                solver.getShortestSolutions(level);
+                informedExpanded[0] += solver.getExpandedNodes();
+            }
+        });
+        long table = bestNanos(() -> {
+            tableExpanded[0] = 0;
+            for (CalculatorGame level : levels) {
+                LevelHeuristic heuristic =
+                    LevelHeuristic.withDistanceTable(level);
+                IdaStarSolver solver = new IdaStarSolver(heuristic);
+                solver.getShortestSolutions(level);
+                tableExpanded[0] +=
+                    solver.getExpandedNodes()
+                        + heuristic.getTableExpandedNodes();
+            }
+        });
+
+        System.out.printf("Shortest solutions of %d levels%n", levels.size());
+        report("Iterative deepening", iterative, iterative);
+        report("IDA* without heuristic", blind, iterative);
+        report("IDA* with level heuristic", informed, iterative);
+        report("IDA* with distance table", table, iterative);
+        System.out
+            .printf(
+                "States expanded: %d without heuristic, %d with level "
+                    + "heuristic, %d with distance table and making it%n",
+                blindExpanded[0],
+                informedExpanded[0],
+                tableExpanded[0]
+            );
+    }
+
+    /**
+     * Solves the shipped levels that can be compiled, and a larger level,
+     * with the rules interpreted and compiled. The compiled times include
+     * compiling the levels.
+     */
+    private static void compiled() {
+        List<CalculatorGame> levels = new ArrayList<>();
+        for (CalculatorGame level : deepestLevels(Integer.MAX_VALUE)) {
+            if (CompiledSolver.supports(level)) levels.add(level);
+        }
+        System.out.printf("Compilable %d levels%n", levels.size());
+        compiled(levels);
+
+        CalculatorGame large =
+            new CalculatorGame(
+                0,
+                123,
+                COMPILED_MOVES,
+                Helpers.rules(COMPILED_RULE_STRINGS),
+                null
+            );
+        System.out.printf("Level of %d moves%n", COMPILED_MOVES);
+        compiled(Arrays.asList(large));
+    }
+
+    /** Times solving the levels with Solver, PackedSolver, and compiled */
+    private static void compiled(List<CalculatorGame> levels) {
+        long interpreted = bestNanos(() -> {
+            for (CalculatorGame level : levels) Solver.getAllSolutions(level);
+        });
+        long packed = bestNanos(() -> {
+            for (CalculatorGame level : levels) {
+                new PackedSolver(level).getAllSolutions();
+            }
+        });
+        long compiled = bestNanos(() -> {
+            for (CalculatorGame level : levels) {
+                new CompiledSolver(level).getAllSolutions();
+            }
+        });
+        report("Solver", interpreted, interpreted);
+        report("PackedSolver", packed, interpreted);
+        report("CompiledSolver", compiled, interpreted);
+    }
+
+    /** Solves every level as one batch and reports the timings */
+    private static void batch() {
+        List<CalculatorGame> levels = deepestLevels(Integer.MAX_VALUE);
+        try (BatchSolver solver = new BatchSolver()) {
+            bestNanos(() -> solveAll(solver, levels)); // warm up
+            long start = System.nanoTime();
+            List<BatchSolver.Result> results = solveAll(solver, levels);
+            long wall = System.nanoTime() - start;
+            long slowest = 0, total = 0;
+            for (BatchSolver.Result result : results) {
+                slowest = Math.max(slowest, result.NANOS);
+                total += result.NANOS;
+            }
+            System.out
+                .printf(
+                    "Batch of %d levels (%s)%n",
+                    levels.size(),
+                    solver.usesVirtualThreads()
+                        ? "virtual threads"
+                        : "bounded pool"
+                );
+            report("Sum of levels", total, wall);
+            report("Slowest level", slowest, wall);
+            report("Batch wall time", wall, wall);
+        }
+    }
+
+    /** @return the results of solving the levels as one batch */
+    private static List<BatchSolver.Result> solveAll(
+        BatchSolver solver,
+        List<CalculatorGame> levels
+    ) {
+        List<CompletableFuture<BatchSolver.Result>> futures =
+            solver.solveAll(levels, CompiledSolver::solve);
+        List<BatchSolver.Result> results = new ArrayList<>();
+        for (CompletableFuture<BatchSolver.Result> future : futures) {
+            results.add(future.join());
+        }
+        return results;
+    }
+
+    /** @return the time a ParallelSolver takes to solve all the levels */
+    private static long parallelNanos(
+        List<CalculatorGame> levels,
+        int parallelism
+    ) {
+        try (ParallelSolver solver = new ParallelSolver(parallelism)) {
+            return bestNanos(() -> {
+                for (CalculatorGame level : levels) {
+                    solver.getAllSolutions(level);
+                }
+            });
+        }
+    }
+
+    /** @return the given number of levels with the most moves */
+    static List<CalculatorGame> deepestLevels(int numLevels) {
+        List<CalculatorGame> levels = new ArrayList<>();
+        for (String testCasePath : Helpers.testCasePaths()) {
+            levels.add(Serialize.loadTestCase(testCasePath).GAME);
+        }
+        levels
+            .sort(
+                Comparator
+                    .comparingInt(CalculatorGame::getMovesLeft)
+                    .reversed()
+            );
+        return levels.subList(0, Math.min(numLevels, levels.size()));
+    }
+
+    /** @return the fastest time of the measured runs, in nanoseconds */
+    static long bestNanos(Runnable run) {
+        for (int i = 0; i < WARMUP_RUNS; i++) run.run();
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < MEASURED_RUNS; i++) {
+            long start = System.nanoTime();
+            run.run();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best;
+    }
+
+    /** Prints a measurement and its speedup over the baseline */
+    static void report(String name, long nanos, long baselineNanos) {
+        System.out
+            .printf(
+                "%-30s %10.2f ms %6.2fx%n",
+                name,
+                nanos / 1e6,
+                (double) baselineNanos / nanos
+            );
+    }
+}
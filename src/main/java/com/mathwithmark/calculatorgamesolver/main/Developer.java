@@ -5,9 +5,9 @@ import java.io.IOException;
 import java.util.List;
 import java.util.Scanner;
 
-import com.mathwithmark.calculatorgamesolver.brutesolver.Solver;
 import com.mathwithmark.calculatorgamesolver.calculatorgame.CalculatorGame;
 import com.mathwithmark.calculatorgamesolver.calculatorgame.Config;
+import com.mathwithmark.calculatorgamesolver.calculatorgame.SolveSession;
 import com.mathwithmark.calculatorgamesolver.yaml.Serialize;
 
 public class Developer {
@@ -35,13 +35,22 @@ public class Developer {
 
     public static void main(String[] args) throws IOException {
         Scanner scanner = new Scanner(System.in);
+        // Kept while only the moves change, so each solve reuses the last
+        SolveSession session = null;
         do {
             Main.getInput(args, scanner);
-            List<List<String>> solutions =
-                Solver.getAllSolutions(Main.getCalculatorGame());
-            List<String> solution = solutions.get(0);
-            Main.printSolutions(solutions);
-            promptSaveTestCase(scanner, Main.getCalculatorGame(), solution);
+            CalculatorGame game = Main.getCalculatorGame();
+            if (session == null || !session.covers(game)) {
+                session = new SolveSession(game);
+            }
+            List<String> solution =
+                session.getShortestSolution(game.getMovesLeft());
+            if (solution != null) {
+                System.out.print(Main.solutionPrintString(solution));
+                promptSaveTestCase(scanner, game, solution);
+            } else {
+                System.out.println(Config.UNSOLVABLE_PROMPT);
+            }
         } while (!promptQuit(scanner));
         System.out.println(GOODBYE_MESSAGE);
     }
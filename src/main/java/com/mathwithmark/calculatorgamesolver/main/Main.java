@@ -1,14 +1,18 @@
 package com.mathwithmark.calculatorgamesolver.main;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Scanner;
+import java.util.stream.Stream;
 
 import com.mathwithmark.calculatorgamesolver.brutesolver.Solver;
 import com.mathwithmark.calculatorgamesolver.calculatorgame.CalculatorGame;
 import com.mathwithmark.calculatorgamesolver.calculatorgame.Config;
 import com.mathwithmark.calculatorgamesolver.calculatorgame.Rule;
+import com.mathwithmark.calculatorgamesolver.calculatorgame.SolutionCache;
 
 /**
  * Runs the Calculator CalculatorGame solver
@@ -21,20 +25,61 @@ public class Main {
     private static int[] portals = null;
     private static CalculatorGame calculatorGame;
     private static boolean again;
+    /** The most solutions to print */
+    private static long limit = Long.MAX_VALUE;
 
     static final String AGAIN_PROMPT = "Solve again?";
 
     public static void main(String[] args) {
         Scanner scanner = new Scanner(System.in);
+        SolutionCache cache = openCache();
         do {
             getInput(args, scanner);
-            List<List<String>> solutions =
-                Solver.getAllSolutions(calculatorGame);
-            printSolutions(solutions);
+            printSolutions(cache, calculatorGame);
             promptAgain(scanner);
             args = new String[0]; // can't use the same args again
         } while (again);
         scanner.close();
+        try {
+            cache.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * @return a cache in {@link Config#SOLUTION_CACHE_PATH}, or in memory only
+     * if there is none or it can't be opened
+     */
+    private static SolutionCache openCache() {
+        String path = Config.SOLUTION_CACHE_PATH;
+        if (path != null) {
+            try {
+                return new SolutionCache(SolutionCache.DEFAULT_CAPACITY, path);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        return new SolutionCache(SolutionCache.DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Prints at most the limit of the game's solutions, from the cache if it
+     * has them. An uncached game is searched lazily, and each solution is
+     * printed as soon as it is found. Without a limit, the solutions are also
+     * kept, and cached once the search has found them all.
+     */
+    static void printSolutions(SolutionCache cache, CalculatorGame game) {
+        List<List<String>> cached = cache.get(game);
+        if (cached != null) {
+            printSolutions(cached.stream().limit(limit));
+        } else if (limit != Long.MAX_VALUE) {
+            printSolutions(Solver.solutions(game).limit(limit));
+        } else {
+            List<List<String>> solutions = new ArrayList<>();
+            printSolutions(Solver.solutions(game).peek(solutions::add));
+            cache.put(game, solutions);
+        }
     }
 
     public static void getInput(String[] args, Scanner scanner) {
@@ -55,10 +100,22 @@ public class Main {
      * @param solutions the solutions to print
      */
     public static void printSolutions(List<List<String>> solutions) {
-        if (solutions.isEmpty()) System.out.println(Config.UNSOLVABLE_PROMPT);
+        printSolutions(solutions.stream());
+    }
+
+    /**
+     * Prints each solution as soon as the stream provides it, the same as
+     * {@link #printSolutions(List)}
+     * @param solutions the solutions to print
+     */
+    public static void printSolutions(Stream<List<String>> solutions) {
+        Iterator<List<String>> iterator = solutions.iterator();
+        if (!iterator.hasNext()) {
+            System.out.println(Config.UNSOLVABLE_PROMPT);
+        }
 
-        for (List<String> solution : solutions) {
-            System.out.print(solutionPrintString(solution));
+        while (iterator.hasNext()) {
+            System.out.print(solutionPrintString(iterator.next()));
         }
     }
 
@@ -106,6 +163,7 @@ public class Main {
      * @param scanner
      */
     public static void parseInput(Scanner scanner) {
+        limit = Long.MAX_VALUE; // only arguments set a limit
         System.out.print(Config.START_PROMPT);
         value = scanner.nextInt();
 
@@ -143,7 +201,8 @@ public class Main {
     }
 
     /**
-     * Parse input from the given array
+     * Parse input from the given array. An eighth argument, if given, is the
+     * most solutions to print.
      *
      * @param args
      */
@@ -159,6 +218,7 @@ public class Main {
         } else {
             portals = null;
         }
+        limit = args.length > 7 ? Long.parseLong(args[7]) : Long.MAX_VALUE;
     }
 
     public static void parseRules(List<String> ruleStrings) {
@@ -3,8 +3,10 @@ package com.mathwithmark.calculatorgamesolver.main;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Optional;
 import java.util.Scanner;
 
+import com.mathwithmark.calculatorgamesolver.brutesolver.Solver;
 import com.mathwithmark.calculatorgamesolver.calculatorgame.CalculatorGame;
 import com.mathwithmark.calculatorgamesolver.calculatorgame.Config;
 import com.mathwithmark.calculatorgamesolver.calculatorgame.Rule;
@@ -20,18 +22,26 @@ public class Play {
     static final char NO_INPUT = 'n';
     static final String QUIT_LEVEL_INPUT = "quit";
     static final String RESTART_LEVEL_INPUT = "clear";
+    static final String HINT_INPUT = "hint";
 
     // Messages do not prompt for user input
     static final String GAME_WON_MESSAGE =
         "Congratulations, you beat the game!";
     static final String GOODBYE_MESSAGE = "Goodbye!";
     static final String HIGHEST_LEVEL_MESSAGE = "You got to level %d.";
+    static final String HINT_MESSAGE = "Hint: try '%s'.";
     private static final String LEVEL_BROKE_MESSAGE =
         "Oops! Applying that rule broke the level.";
     private static final String LEVEL_LOST_MESSAGE = "You lost the level.";
     static final String LEVEL_TITLE_MESSAGE = "Level %d";
     static final String LEVEL_WON_MESSAGE =
         "Congratulations, you beat the level!";
+    static final String NO_HINT_MESSAGE =
+        String
+            .format(
+                "The level can't be beaten from here. Try '%s'.",
+                RESTART_LEVEL_INPUT
+            );
     private static String RESTARTING_LEVEL_MESSAGE = "Restarting the level.";
     /**
      * Message to display when the user enters invalid input for the rule prompt
@@ -39,9 +49,10 @@ public class Play {
     static final String VALID_RULE_MESSAGE =
         String
             .format(
-                "Please enter a valid rule, '%s', or '%s'.",
+                "Please enter a valid rule, '%s', '%s', or '%s'.",
                 QUIT_LEVEL_INPUT,
-                RESTART_LEVEL_INPUT
+                RESTART_LEVEL_INPUT,
+                HINT_INPUT
             );
     static final String WELCOME_MESSAGE = "Welcome to Calculator: The Game!";
 
@@ -58,9 +69,11 @@ public class Play {
         String
             .format(
                 "Enter rule to apply "
-                    + "('%s' to quit, '%s' to restart the level): ",
+                    + "('%s' to quit, '%s' to restart the level, "
+                    + "'%s' for a hint): ",
                 QUIT_LEVEL_INPUT,
-                RESTART_LEVEL_INPUT
+                RESTART_LEVEL_INPUT,
+                HINT_INPUT
             );
 
     public static void main(String[] args) {
@@ -126,13 +139,27 @@ public class Play {
      * @param input the input to validate
      * @param level the level for which the input was given
      * @return whether the input is valid for the level. True if the input is a
-     * rule of the level, the QUIT_INPUT, or the RESTART_LEVEL_INPUT. False
-     * otherwise.
+     * rule of the level, the QUIT_INPUT, the RESTART_LEVEL_INPUT, or the
+     * HINT_INPUT. False otherwise.
      */
     private static boolean validRuleInput(String input, CalculatorGame level) {
         return ruleStrings(level).contains(input)
             || input.equals(QUIT_LEVEL_INPUT)
-            || input.equals(RESTART_LEVEL_INPUT);
+            || input.equals(RESTART_LEVEL_INPUT)
+            || input.equals(HINT_INPUT);
+    }
+
+    /**
+     * Prints the first move of a solution from the given level, or that there
+     * is none
+     */
+    private static void printHint(CalculatorGame level) {
+        Optional<List<String>> solution = Solver.findAnySolution(level);
+        if (solution.isPresent()) {
+            System.out.printf(HINT_MESSAGE + "\n", solution.get().get(0));
+        } else {
+            System.out.println(NO_HINT_MESSAGE);
+        }
     }
 
     /**
@@ -159,6 +186,10 @@ public class Play {
                 level = restartLevel(originalLevel);
                 continue;
             }
+            if (input.equals(HINT_INPUT)) {
+                printHint(level);
+                continue;
+            }
             Rule rule =
                 Arrays
                     .asList(level.getRules())
@@ -0,0 +1,574 @@
+package com.mathwithmark.calculatorgamesolver.brutesolver;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+
+import com.mathwithmark.calculatorgamesolver.calculatorgame.CalculatorGame;
+import com.mathwithmark.calculatorgamesolver.calculatorgame.CompiledSolver;
+import com.mathwithmark.calculatorgamesolver.calculatorgame.Rule;
+
+import org.junit.jupiter.api.Test;
+
+public class SolverTests {
+    /**
+     * A game whose solutions reach the same states through different move
+     * orders: 0 to 4 in 3 moves with +1, +2, and +/-
+     */
+    static CalculatorGame transposingGame() {
+        Rule[] rules = {
+            Rule.of(Rule.ADD, 1),
+            Rule.of(Rule.ADD, 2),
+            Rule.of(Rule.SIGN),
+        };
+        return new CalculatorGame(0, 4, 3, rules, null);
+    }
+
+    /** A game with no solution: 0 to 5 in 2 moves with +1 */
+    static CalculatorGame unsolvableGame() {
+        Rule[] rules = {
+            Rule.of(Rule.ADD, 1)
+        };
+        return new CalculatorGame(0, 5, 2, rules, null);
+    }
+}
+
+class TranspositionTableTests {
+    @Test
+    void allSolutionsInSearchOrder() {
+        List<List<String>> expected =
+            Arrays
+                .asList(
+                    Arrays.asList("+2", "+2"),
+                    Arrays.asList("+2", "+1", "+1"),
+                    Arrays.asList("+1", "+2", "+1"),
+                    Arrays.asList("+1", "+1", "+2")
+                );
+
+        List<List<String>> solutions =
+            Solver.getAllSolutions(SolverTests.transposingGame());
+
+        assertEquals(expected, solutions);
+    }
+
+    @Test
+    void sharedTableGivesSameSolutions() {
+        TranspositionTable table = new TranspositionTable();
+        CalculatorGame game = SolverTests.transposingGame();
+
+        List<List<String>> first = Solver.getAllSolutions(game, table);
+        List<List<String>> second = Solver.getAllSolutions(game, table);
+
+        assertTrue(table.size() > 0);
+        assertEquals(first, second);
+    }
+
+    @Test
+    void emptyTableGivesSameSolutions() {
+        CalculatorGame game = SolverTests.transposingGame();
+        TranspositionTable table = new TranspositionTable(0);
+
+        List<List<String>> solutions = Solver.getAllSolutions(game, table);
+
+        assertEquals(0, table.size());
+        assertEquals(Solver.getAllSolutions(game), solutions);
+    }
+
+    @Test
+    void firstSolutionIsASolution() {
+        CalculatorGame game = SolverTests.transposingGame();
+
+        List<String> solution =
+            Solver.getFirstSolution(game, new TranspositionTable());
+
+        assertTrue(Solver.getAllSolutions(game).contains(solution));
+    }
+
+    @Test
+    void firstSolutionOfUnsolvableGameIsNull() {
+        CalculatorGame game = SolverTests.unsolvableGame();
+
+        assertNull(Solver.getFirstSolution(game, new TranspositionTable()));
+    }
+
+    @Test
+    void negativeCapacityIsInvalid() {
+        assertThrows(
+            IllegalArgumentException.class,
+            () -> new TranspositionTable(-1)
+        );
+    }
+}
+
+class ShortestSolutionsTests {
+    @Test
+    void onlyShortestSolutions() {
+        List<List<String>> expected =
+            Arrays.asList(Arrays.asList("+2", "+2"));
+
+        List<List<String>> solutions =
+            Solver.getShortestSolutions(SolverTests.transposingGame());
+
+        assertEquals(expected, solutions);
+    }
+
+    @Test
+    void sameOrderAsAllSolutions() {
+        Rule[] rules = {
+            Rule.of(Rule.ADD, 1),
+            Rule.of(Rule.ADD, 2),
+            Rule.of(Rule.ADD, 3),
+        };
+        CalculatorGame game = new CalculatorGame(0, 6, 4, rules, null);
+        List<List<String>> expected = new ArrayList<>();
+        for (List<String> solution : Solver.getAllSolutions(game)) {
+            if (solution.size() == 2) expected.add(solution);
+        }
+
+        assertEquals(expected, Solver.getShortestSolutions(game));
+    }
+
+    @Test
+    void sharedTableGivesSameSolutions() {
+        TranspositionTable table = new TranspositionTable();
+        CalculatorGame game = SolverTests.transposingGame();
+
+        List<List<String>> all = Solver.getAllSolutions(game, table);
+        List<List<String>> shortest = Solver.getShortestSolutions(game, table);
+
+        assertEquals(Solver.getAllSolutions(game), all);
+        assertEquals(Solver.getShortestSolutions(game), shortest);
+    }
+
+    @Test
+    void unsolvableGameHasNoShortestSolutions() {
+        CalculatorGame game = SolverTests.unsolvableGame();
+
+        assertTrue(Solver.getShortestSolutions(game).isEmpty());
+    }
+}
+
+class FindAnySolutionTests {
+    @Test
+    void findsASolution() {
+        CalculatorGame game = SolverTests.transposingGame();
+
+        Optional<List<String>> solution = Solver.findAnySolution(game);
+
+        assertTrue(solution.isPresent());
+        assertTrue(Solver.getAllSolutions(game).contains(solution.get()));
+    }
+
+    @Test
+    void unsolvableGameHasNoSolution() {
+        CalculatorGame game = SolverTests.unsolvableGame();
+
+        assertFalse(Solver.findAnySolution(game).isPresent());
+    }
+}
+
+class SolutionStreamTests {
+    @Test
+    void sameSolutionsAsAllSolutions() {
+        CalculatorGame game = SolverTests.transposingGame();
+
+        List<List<String>> solutions =
+            Solver.solutions(game).collect(Collectors.toList());
+
+        assertEquals(Solver.getAllSolutions(game), solutions);
+    }
+
+    @Test
+    void limitedStreamGivesFirstSolutions() {
+        CalculatorGame game = SolverTests.transposingGame();
+
+        List<List<String>> solutions =
+            Solver.solutions(game).limit(2).collect(Collectors.toList());
+
+        assertEquals(Solver.getAllSolutions(game).subList(0, 2), solutions);
+    }
+
+    @Test
+    void unsolvableGameHasEmptyStream() {
+        CalculatorGame game = SolverTests.unsolvableGame();
+
+        assertFalse(Solver.solutions(game).findAny().isPresent());
+    }
+}
+
+class ParallelSolverTests {
+    @Test
+    void sameSolutionsAsSolver() {
+        CalculatorGame game = SolverTests.transposingGame();
+
+        try (ParallelSolver solver = new ParallelSolver(4, 0)) {
+            assertEquals(
+                Solver.getAllSolutions(game),
+                solver.getAllSolutions(game)
+            );
+        }
+    }
+
+    @Test
+    void sameSolutionsWithoutSplitting() {
+        CalculatorGame game = SolverTests.transposingGame();
+
+        try (ParallelSolver solver = new ParallelSolver(2, Long.MAX_VALUE)) {
+            assertEquals(
+                Solver.getAllSolutions(game),
+                solver.getAllSolutions(game)
+            );
+        }
+    }
+
+    @Test
+    void unsolvableGameHasNoSolutions() {
+        try (ParallelSolver solver = new ParallelSolver(2)) {
+            assertTrue(
+                solver.getAllSolutions(SolverTests.unsolvableGame()).isEmpty()
+            );
+        }
+    }
+
+    @Test
+    void parallelismIsConfigurable() {
+        try (ParallelSolver solver = new ParallelSolver(3)) {
+            assertEquals(3, solver.getParallelism());
+        }
+        assertThrows(
+            IllegalArgumentException.class,
+            () -> new ParallelSolver(0)
+        );
+    }
+}
+
+class BatchSolverTests {
+    @Test
+    void solvesEachGameInOrder() {
+        List<CalculatorGame> games =
+            Arrays
+                .asList(
+                    SolverTests.transposingGame(),
+                    SolverTests.unsolvableGame()
+                );
+
+        try (BatchSolver solver = new BatchSolver()) {
+            List<CompletableFuture<BatchSolver.Result>> results =
+                solver.solveAll(games);
+
+            assertEquals(games.size(), results.size());
+            for (int i = 0; i < games.size(); i++) {
+                BatchSolver.Result result = results.get(i).join();
+                assertEquals(games.get(i), result.GAME);
+                assertEquals(
+                    Solver.getAllSolutions(games.get(i)),
+                    result.SOLUTIONS
+                );
+                assertTrue(result.NANOS >= 0);
+            }
+        }
+    }
+
+    @Test
+    void boundedPoolSolvesEachGame() {
+        List<CalculatorGame> games =
+            Arrays.asList(SolverTests.transposingGame());
+
+        try (BatchSolver solver = new BatchSolver(1)) {
+            assertFalse(solver.usesVirtualThreads());
+            assertEquals(
+                Solver.getAllSolutions(games.get(0)),
+                solver.solveAll(games).get(0).join().SOLUTIONS
+            );
+        }
+    }
+
+    @Test
+    void solvesWithGivenFunction() {
+        List<CalculatorGame> games =
+            Arrays
+                .asList(
+                    SolverTests.transposingGame(),
+                    SolverTests.unsolvableGame()
+                );
+
+        try (BatchSolver solver = new BatchSolver(2)) {
+            List<CompletableFuture<BatchSolver.Result>> results =
+                solver
+                    .solveAll(
+                        games,
+                        game -> new CompiledSolver(game).getAllSolutions()
+                    );
+
+            for (int i = 0; i < games.size(); i++) {
+                assertEquals(
+                    Solver.getAllSolutions(games.get(i)),
+                    results.get(i).join().SOLUTIONS
+                );
+            }
+        }
+    }
+}
+
+class SolutionDagTests {
+    /** A game whose states never repeat: 0 to 4 in 3 moves with +1 and +2 */
+    private static CalculatorGame increasingGame() {
+        Rule[] rules = {
+            Rule.of(Rule.ADD, 1),
+            Rule.of(Rule.ADD, 2),
+        };
+        return new CalculatorGame(0, 4, 3, rules, null);
+    }
+
+    @Test
+    void countsSolutions() {
+        CalculatorGame game = increasingGame();
+
+        assertEquals(
+            Solver.getAllSolutions(game).size(),
+            Solver.countSolutions(game)
+        );
+    }
+
+    @Test
+    void solutionsInSearchOrder() {
+        CalculatorGame game = increasingGame();
+        List<List<String>> solutions = Solver.getAllSolutions(game);
+        SolutionDag dag = new SolutionDag(game);
+
+        for (int i = 0; i < solutions.size(); i++) {
+            assertEquals(solutions.get(i), dag.getSolution(i));
+        }
+    }
+
+    @Test
+    void skipsRepeatedStates() {
+        CalculatorGame game = SolverTests.transposingGame();
+        List<List<String>> solutions = Solver.getAllSolutions(game);
+        SolutionDag dag = new SolutionDag(game);
+
+        // +/- then +/- returns to the start, which neither counts
+        assertEquals(solutions.size(), dag.countSolutions());
+        for (int i = 0; i < solutions.size(); i++) {
+            assertEquals(solutions.get(i), dag.getSolution(i));
+        }
+    }
+
+    @Test
+    void reusesCountsOnlyWithoutRepeats() {
+        Rule[] rules = {
+            Rule.of(Rule.SIGN),
+            Rule.of(Rule.ADD, 3),
+            Rule.of(Rule.REVERSE),
+            Rule.of(Rule.MULTIPLY, -3),
+        };
+        CalculatorGame game = new CalculatorGame(12, -36, 5, rules, null);
+        List<List<String>> solutions = Solver.getAllSolutions(game);
+        SolutionDag dag = new SolutionDag(game);
+
+        // States are reached again from paths that already have some of the
+        // states on their solutions
+        assertEquals(solutions.size(), dag.countSolutions());
+        for (int i = 0; i < solutions.size(); i++) {
+            assertEquals(solutions.get(i), dag.getSolution(i));
+        }
+    }
+
+    @Test
+    void indexOutOfBounds() {
+        SolutionDag dag = new SolutionDag(increasingGame());
+
+        assertThrows(
+            IndexOutOfBoundsException.class,
+            () -> dag.getSolution(dag.countSolutions())
+        );
+        assertThrows(
+            IndexOutOfBoundsException.class,
+            () -> dag.getSolution(-1)
+        );
+    }
+
+    @Test
+    void unsolvableGameHasNoSolutions() {
+        assertEquals(0, Solver.countSolutions(SolverTests.unsolvableGame()));
+    }
+}
+
+class IdaStarSolverTests {
+    @Test
+    void sameSolutionsAsShortestSolutions() {
+        CalculatorGame game = SolverTests.transposingGame();
+        IdaStarSolver solver = new IdaStarSolver(Heuristic.NONE);
+
+        assertEquals(
+            Solver.getShortestSolutions(game),
+            solver.getShortestSolutions(game)
+        );
+        assertTrue(solver.getExpandedNodes() > 0);
+    }
+
+    @Test
+    void unsolvableGameHasNoShortestSolutions() {
+        IdaStarSolver solver = new IdaStarSolver(Heuristic.NONE);
+
+        assertTrue(
+            solver.getShortestSolutions(SolverTests.unsolvableGame()).isEmpty()
+        );
+    }
+
+    @Test
+    void boundAboveMovesLeftExpandsNothing() {
+        IdaStarSolver solver = new IdaStarSolver(game -> Heuristic.UNWINNABLE);
+
+        assertTrue(
+            solver.getShortestSolutions(SolverTests.transposingGame()).isEmpty()
+        );
+        assertEquals(0, solver.getExpandedNodes());
+    }
+
+    @Test
+    void tighterBoundExpandsFewerNodes() {
+        CalculatorGame game = SolverTests.transposingGame();
+        IdaStarSolver blind = new IdaStarSolver(Heuristic.NONE);
+        // each move adds at most 2
+        IdaStarSolver informed =
+            new IdaStarSolver(
+                g -> {
+                    CalculatorGame level = (CalculatorGame) g;
+                    int distance = Math.abs(level.getGoal() - level.getValue());
+                    return (distance + 1) / 2;
+                }
+            );
+
+        assertEquals(
+            blind.getShortestSolutions(game),
+            informed.getShortestSolutions(game)
+        );
+        assertTrue(informed.getExpandedNodes() < blind.getExpandedNodes());
+    }
+}
+
+class CanonicalSolutionsTests {
+    @Test
+    void commutingMovesInOneOrder() {
+        List<List<String>> expected =
+            Arrays
+                .asList(
+                    Arrays.asList("+2", "+2"),
+                    Arrays.asList("+1", "+1", "+2")
+                );
+
+        List<List<String>> solutions =
+            Solver.getCanonicalSolutions(SolverTests.transposingGame());
+
+        assertEquals(expected, solutions);
+    }
+
+    @Test
+    void noCommutingMovesGivesAllSolutions() {
+        Rule[] rules = {
+            Rule.of(Rule.ADD, 1),
+            Rule.of(Rule.MULTIPLY, 2),
+        };
+        CalculatorGame game = new CalculatorGame(1, 6, 3, rules, null);
+
+        assertEquals(
+            Solver.getAllSolutions(game),
+            Solver.getCanonicalSolutions(game)
+        );
+    }
+
+    @Test
+    void commutationTable() {
+        CommutationTable table =
+            SolverTests.transposingGame().commutationTable();
+
+        assertTrue(table.commutes("+1", "+2"));
+        assertFalse(table.commutes("+1", "+/-"));
+        assertTrue(table.outOfOrder("+2", "+1"));
+        assertFalse(table.outOfOrder("+1", "+2"));
+    }
+}
+
+class PruningTests {
+    @Test
+    void pruningKeepsEverySolution() {
+        Rule[] rules = {
+            Rule.of(Rule.ADD, 3),
+            Rule.of(Rule.SUBTRACT, 3),
+            Rule.of(Rule.MULTIPLY, 2),
+            Rule.of(Rule.DIVIDE, 2),
+            Rule.of(Rule.REVERSE),
+        };
+        CalculatorGame game = new CalculatorGame(1, 12, 5, rules, null);
+        Pruning pruning = new Pruning();
+        List<List<String>> pruned = Solver.getAllSolutions(game, pruning);
+        List<List<String>> unpruned = new ArrayList<>();
+        addUnprunedSolutions(
+            game.rootState(),
+            new HashSet<>(Arrays.asList(game.transpositionKey())),
+            new ArrayList<>(),
+            unpruned
+        );
+        int shortest =
+            unpruned.stream().mapToInt(List::size).min().getAsInt();
+
+        assertTrue(unpruned.containsAll(pruned));
+        for (List<String> solution : unpruned) {
+            if (solution.size() == shortest) {
+                assertTrue(pruned.contains(solution));
+            }
+        }
+        assertTrue(pruning.getCounts().containsKey("-3"));
+        assertTrue(pruning.getCounts().containsKey("/2"));
+    }
+
+    /**
+     * Adds every solution from the given state that doesn't return to a state
+     * of the path, making every successor without pruning any
+     * @param path the keys of the state and its ancestors
+     * @param moves the moves to the state
+     */
+    private static void addUnprunedSolutions(
+        State state,
+        Set<Object> path,
+        List<String> moves,
+        List<List<String>> solutions
+    ) {
+        for (State successor : state.getGame().getSuccessors(state)) {
+            Object key = successor.getGame().transpositionKey();
+            if (!path.add(key)) continue;
+            moves.add(successor.getTransitionString());
+            if (successor.getGame().isWon()) {
+                solutions.add(new ArrayList<>(moves));
+            }
+            addUnprunedSolutions(successor, path, moves, solutions);
+            moves.remove(moves.size() - 1);
+            path.remove(key);
+        }
+    }
+
+    @Test
+    void countsPrunedMoves() {
+        Pruning pruning = new Pruning();
+
+        Solver.getAllSolutions(SolverTests.transposingGame(), pruning);
+
+        // Changing the sign of 0, or back after changing it, does nothing
+        assertTrue(pruning.getCounts().get("+/-") > 0);
+        long total =
+            pruning.getCounts().values().stream().mapToLong(c -> c).sum();
+        assertEquals(total, pruning.getTotal());
+    }
+}
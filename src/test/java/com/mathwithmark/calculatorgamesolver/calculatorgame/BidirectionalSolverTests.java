@@ -0,0 +1,128 @@
+package com.mathwithmark.calculatorgamesolver.calculatorgame;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import com.mathwithmark.calculatorgamesolver.brutesolver.Solver;
+
+import org.junit.jupiter.api.Test;
+
+public class BidirectionalSolverTests {
+    @Test
+    void shortestSolution() {
+        Rule[] rules = {
+            Rule.of(Rule.ADD, 1),
+            Rule.of(Rule.MULTIPLY, 2),
+            Rule.of(Rule.PAD, 1),
+            Rule.of(Rule.DELETE),
+        };
+        CalculatorGame game = new CalculatorGame(0, 42, 8, rules, null);
+        BidirectionalSolver solver = new BidirectionalSolver(game);
+
+        assertTrue(solver.isBidirectional());
+        assertNull(solver.getFallbackReason());
+        assertShortest(game, solver.getShortestSolution());
+    }
+
+    @Test
+    void shortestSolutionWithDigitRules() {
+        Rule[] rules = {
+            Rule.of(Rule.REVERSE),
+            Rule.of(Rule.SHIFT_LEFT),
+            Rule.of(Rule.INVERSE_TEN),
+            Rule.of(Rule.ADD, 3),
+            Rule.of(Rule.DIVIDE, 2),
+        };
+        CalculatorGame game = new CalculatorGame(25, 91, 6, rules, null);
+        BidirectionalSolver solver = new BidirectionalSolver(game);
+
+        assertTrue(solver.isBidirectional());
+        assertShortest(game, solver.getShortestSolution());
+    }
+
+    @Test
+    void nonInvertibleRuleFallsBack() {
+        Rule[] rules = {
+            Rule.of(Rule.ADD, 5),
+            Rule.of(Rule.SUM),
+        };
+        CalculatorGame game = new CalculatorGame(9, 14, 3, rules, null);
+        BidirectionalSolver solver = new BidirectionalSolver(game);
+
+        assertFalse(solver.isBidirectional());
+        assertNotNull(solver.getFallbackReason());
+        assertShortest(game, solver.getShortestSolution());
+    }
+
+    @Test
+    void portalsFallBack() {
+        Rule[] rules = {
+            Rule.of(Rule.PAD, 9),
+            Rule.of(Rule.MULTIPLY, 3),
+            Rule.of(Rule.REVERSE),
+        };
+        int[] portals = {
+            3, 0
+        };
+        CalculatorGame game = new CalculatorGame(9, 729, 5, rules, portals);
+        BidirectionalSolver solver = new BidirectionalSolver(game);
+
+        assertFalse(solver.isBidirectional());
+        assertShortest(game, solver.getShortestSolution());
+    }
+
+    @Test
+    void startAtGoalIsUnsolvable() {
+        Rule[] rules = {
+            Rule.of(Rule.ADD, 1),
+            Rule.of(Rule.SUBTRACT, 1),
+        };
+        CalculatorGame game = new CalculatorGame(3, 3, 4, rules, null);
+
+        assertNull(new BidirectionalSolver(game).getShortestSolution());
+    }
+
+    @Test
+    void tooFewMovesIsUnsolvable() {
+        Rule[] rules = {
+            Rule.of(Rule.ADD, 1)
+        };
+        CalculatorGame game = new CalculatorGame(0, 5, 4, rules, null);
+
+        assertNull(new BidirectionalSolver(game).getShortestSolution());
+    }
+
+    @Test
+    void bothSidesMeet() {
+        Rule[] rules = {
+            Rule.of(Rule.ADD, 2),
+            Rule.of(Rule.MULTIPLY, 3),
+        };
+        CalculatorGame game = new CalculatorGame(1, 33, 6, rules, null);
+        List<String> solution =
+            new BidirectionalSolver(game).getShortestSolution();
+
+        assertEquals(4, solution.size());
+        assertShortest(game, solution);
+    }
+
+    /**
+     * Asserts the solution is one of the game's solutions and no other is
+     * shorter
+     */
+    private static void assertShortest(
+        CalculatorGame game,
+        List<String> solution
+    ) {
+        List<List<String>> solutions = Solver.getAllSolutions(game);
+        assertTrue(solutions.contains(solution));
+        for (List<String> other : solutions) {
+            assertTrue(solution.size() <= other.size());
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.mathwithmark.calculatorgamesolver.calculatorgame;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import com.mathwithmark.calculatorgamesolver.brutesolver.Solver;
+
+import org.junit.jupiter.api.Test;
+
+public class BitsetSolverTests {
+    @Test
+    void shortestSolution() {
+        Rule[] rules = {
+            Rule.of(Rule.ADD, 1),
+            Rule.of(Rule.MULTIPLY, 2),
+            Rule.of(Rule.PAD, 1),
+            Rule.of(Rule.DELETE),
+        };
+        CalculatorGame game = new CalculatorGame(0, 42, 8, rules, null);
+
+        assertShortest(game, new BitsetSolver(game));
+    }
+
+    @Test
+    void shortestSolutionWithPortals() {
+        Rule[] rules = {
+            Rule.of(Rule.PAD, 9),
+            Rule.of(Rule.MULTIPLY, 3),
+            Rule.of(Rule.REVERSE),
+        };
+        int[] portals = {
+            3, 0
+        };
+        CalculatorGame game = new CalculatorGame(9, 729, 5, rules, portals);
+
+        assertShortest(game, new BitsetSolver(game));
+    }
+
+    @Test
+    void unsolvableGame() {
+        Rule[] rules = {
+            Rule.of(Rule.ADD, 2)
+        };
+        CalculatorGame game = new CalculatorGame(0, 5, 50, rules, null);
+        BitsetSolver solver = new BitsetSolver(game);
+
+        assertEquals(-1, solver.getShortestLength());
+        assertNull(solver.getShortestSolution());
+    }
+
+    @Test
+    void manyMoves() {
+        Rule[] rules = {
+            Rule.of(Rule.ADD, 7),
+            Rule.of(Rule.REVERSE),
+            Rule.of(Rule.SHIFT_LEFT),
+            Rule.of(Rule.INVERSE_TEN),
+        };
+        CalculatorGame game = new CalculatorGame(1, 987654, 100, rules, null);
+        BitsetSolver solver = new BitsetSolver(game);
+
+        List<String> solution = solver.getShortestSolution();
+        assertEquals(solver.getShortestLength(), solution.size());
+        assertEquals(987654, play(game, solution).getValue());
+    }
+
+    @Test
+    void storeIsUnsupported() {
+        Rule[] rules = {
+            Rule.of(Rule.STORE)
+        };
+        CalculatorGame game = new CalculatorGame(1, 11, 3, rules, null);
+
+        assertFalse(BitsetSolver.supports(game));
+        assertThrows(
+            IllegalArgumentException.class,
+            () -> new BitsetSolver(game)
+        );
+    }
+
+    /**
+     * Asserts the solver's solution is one of the game's solutions and no
+     * other is shorter
+     */
+    private static void assertShortest(
+        CalculatorGame game,
+        BitsetSolver solver
+    ) {
+        List<String> solution = solver.getShortestSolution();
+        List<List<String>> solutions = Solver.getAllSolutions(game);
+        assertTrue(solutions.contains(solution));
+        for (List<String> other : solutions) {
+            assertTrue(solution.size() <= other.size());
+        }
+        assertEquals(solution.size(), solver.getShortestLength());
+    }
+
+    /** @return the game after applying each move of the solution */
+    private static CalculatorGame play(
+        CalculatorGame game,
+        List<String> solution
+    ) {
+        for (String move : solution) game = Rule.of(move).apply(game);
+        return game;
+    }
+}
@@ -2,7 +2,13 @@ package com.mathwithmark.calculatorgamesolver.calculatorgame;
 
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import org.junit.jupiter.api.Test;
 
@@ -177,3 +183,162 @@ class RuleSanitationTests {
         return new CalculatorGame(1, 1, 1, rules, null);
     }
 }
+
+class EqualityTests {
+    @Test
+    void equalGamesHaveEqualHashes() {
+        CalculatorGame game = level(3);
+        CalculatorGame same = level(3);
+
+        assertEquals(game, same);
+        assertEquals(game.hashCode(), same.hashCode());
+    }
+
+    @Test
+    void movesOnlyMatterToEquals() {
+        CalculatorGame game = level(3);
+        CalculatorGame fewerMoves = level(2);
+
+        assertNotEquals(game, fewerMoves);
+        assertTrue(game.equalsExceptMoves(fewerMoves));
+    }
+
+    @Test
+    void portalsMatter() {
+        CalculatorGame game = level(3);
+        CalculatorGame withPortals =
+            new CalculatorGame(1, 10, 3, game.getRules(), new int[] {
+                3, 0
+            });
+
+        assertFalse(game.equalsExceptMoves(withPortals));
+    }
+
+    @Test
+    void storeMatters() {
+        Rule[] rules = {
+            Rule.of(Rule.STORE)
+        };
+        CalculatorGame game = new CalculatorGame(1, 10, 3, rules, null);
+        CalculatorGame stored = Rule.of(Rule.UPDATE_STORE).apply(game);
+
+        assertFalse(game.equalsExceptMoves(stored));
+    }
+
+    @Test
+    void internedGamesAreShared() {
+        CalculatorGame game = level(3).intern();
+
+        assertSame(game, level(3).intern());
+        assertNotSame(game, level(2).intern());
+    }
+
+    private static CalculatorGame level(int moves) {
+        Rule[] rules = {
+            Rule.of(Rule.ADD, 1), Rule.of(Rule.MULTIPLY, 2)
+        };
+        return new CalculatorGame(1, 10, moves, rules, null);
+    }
+}
+
+class SuccessorTests {
+    private static final Rule[] RULES = {
+        Rule.of(Rule.MIRROR), Rule.of(Rule.STORE)
+    };
+    private static final int[] PORTALS = {
+        3, 0
+    };
+
+    @Test
+    void sameAsConstructed() {
+        CalculatorGame game = new CalculatorGame(12, 0, 2, RULES, PORTALS);
+        CalculatorGame expected =
+            new CalculatorGame(1221, 0, 1, RULES, PORTALS);
+
+        CalculatorGame successor = game.successor(1221);
+
+        assertEquals(expected, successor);
+        assertEquals(expected.hashCode(), successor.hashCode());
+    }
+
+    @Test
+    void tooManyDigitsIsNull() {
+        CalculatorGame game = new CalculatorGame(12, 0, 2, RULES, null);
+
+        assertNull(game.successor(1_000_000));
+        assertNull(game.successor(Long.MAX_VALUE));
+    }
+
+    @Test
+    void noMovesLeftIsNull() {
+        CalculatorGame game = new CalculatorGame(12, 0, 0, RULES, null);
+
+        assertNull(game.successor(1));
+    }
+}
+
+class RuleStateTests {
+    private static final Rule[] RULES = {
+        Rule.of(Rule.ADD, 2),
+        Rule.of(Rule.META_ADD, 1),
+        Rule.of(Rule.META_ADD, 2),
+        Rule.of(Rule.STORE),
+    };
+
+    @Test
+    void metaAddChangesTheRules() {
+        CalculatorGame game = new CalculatorGame(5, 0, 3, RULES, null);
+
+        CalculatorGame successor = Rule.of(Rule.META_ADD, 2).apply(game);
+
+        assertTrue(successor.isValidRule(Rule.of(Rule.ADD, 4)));
+        assertFalse(successor.isValidRule(Rule.of(Rule.ADD, 2)));
+        assertEquals(9, Rule.of(Rule.ADD, 4).apply(successor).getValue());
+    }
+
+    @Test
+    void sameRulesAreEqualWhateverTheMovesMadeThem() {
+        CalculatorGame game = new CalculatorGame(5, 0, 3, RULES, null);
+        Rule one = Rule.of(Rule.META_ADD, 1), two = Rule.of(Rule.META_ADD, 2);
+
+        CalculatorGame oneThenTwo = two.apply(one.apply(game));
+        CalculatorGame twoThenOne = one.apply(two.apply(game));
+        CalculatorGame constructed =
+            new CalculatorGame(5, 0, 1, oneThenTwo.getRules(), null);
+
+        assertEquals(oneThenTwo, twoThenOne);
+        assertEquals(oneThenTwo.hashCode(), twoThenOne.hashCode());
+        assertEquals(
+            oneThenTwo.transpositionKey(),
+            twoThenOne.transpositionKey()
+        );
+        assertEquals(constructed, oneThenTwo);
+        assertEquals(constructed.hashCode(), oneThenTwo.hashCode());
+    }
+
+    @Test
+    void storedRulesHashLikeConstructedRules() {
+        CalculatorGame game = new CalculatorGame(5, 0, 3, RULES, null);
+
+        CalculatorGame stored =
+            Rule
+                .of(Rule.UPDATE_STORE)
+                .apply(Rule.of(Rule.META_ADD, 2).apply(game));
+        CalculatorGame constructed =
+            new CalculatorGame(5, 0, 1, stored.getRules(), null);
+
+        assertEquals(constructed, stored);
+        assertEquals(constructed.hashCode(), stored.hashCode());
+    }
+
+    @Test
+    void metaAddResetsTheStore() {
+        CalculatorGame game = new CalculatorGame(5, 0, 3, RULES, null);
+        CalculatorGame stored = Rule.of(Rule.UPDATE_STORE).apply(game);
+
+        assertTrue(stored.isValidRule(Rule.stored(5)));
+        CalculatorGame reset = Rule.of(Rule.META_ADD, 1).apply(stored);
+        assertTrue(reset.isValidRule(Rule.of(Rule.STORE)));
+        assertFalse(reset.isValidRule(Rule.stored(5)));
+    }
+}
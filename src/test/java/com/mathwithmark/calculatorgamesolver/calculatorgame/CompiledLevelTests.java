@@ -0,0 +1,134 @@
+package com.mathwithmark.calculatorgamesolver.calculatorgame;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.mathwithmark.calculatorgamesolver.brutesolver.Solver;
+import com.mathwithmark.calculatorgamesolver.yaml.Serialize;
+
+import org.junit.jupiter.api.Test;
+
+public class CompiledLevelTests {
+    @Test
+    void successorsMatchPackedLevel() {
+        Rule[] rules = {
+            Rule.of(Rule.ADD, 7),
+            Rule.of(Rule.DIVIDE, 0),
+            Rule.of("12=>3"),
+            Rule.of(Rule.MIRROR),
+            Rule.of(Rule.POWER, 2),
+        };
+        assertSameSuccessors(new CalculatorGame(0, 0, 3, rules, null));
+    }
+
+    @Test
+    void successorsMatchPackedLevelWithPortals() {
+        Rule[] rules = {
+            Rule.of(Rule.PAD, 9),
+            Rule.of(Rule.MULTIPLY, 3),
+            Rule.of(Rule.REVERSE),
+        };
+        int[] portals = {
+            3, 0
+        };
+        assertSameSuccessors(new CalculatorGame(0, 0, 3, rules, portals));
+    }
+
+    @Test
+    void storeIsUnsupported() {
+        Rule[] rules = {
+            Rule.of(Rule.STORE)
+        };
+        CalculatorGame game = new CalculatorGame(1, 11, 3, rules, null);
+
+        assertFalse(CompiledLevel.supports(game));
+        assertThrows(
+            IllegalArgumentException.class,
+            () -> new CompiledLevel(game)
+        );
+    }
+
+    /**
+     * Asserts that every value has the same successors in the compiled level
+     * as in the packed level, by rule and all at once
+     */
+    private static void assertSameSuccessors(CalculatorGame game) {
+        PackedLevel packed = new PackedLevel(game);
+        CompiledLevel compiled = new CompiledLevel(game);
+        int[] successors = new int[compiled.numRules()];
+        for (int value = -99_999; value <= 99_999; value += 7) {
+            compiled.successors(value, successors);
+            for (int rule = 0; rule < compiled.numRules(); rule++) {
+                int expected = packed.nextValue(value, rule);
+                assertEquals(expected, compiled.nextValue(value, rule));
+                assertEquals(expected, successors[rule]);
+            }
+        }
+    }
+}
+
+class CompiledSolverTests {
+    @Test
+    void sameSolutionsAsSolver() {
+        Rule[] rules = {
+            Rule.of(Rule.ADD, 1),
+            Rule.of(Rule.ADD, 2),
+            Rule.of(Rule.SIGN),
+        };
+        assertSameSolutions(new CalculatorGame(0, 4, 3, rules, null));
+    }
+
+    @Test
+    void sameSolutionsWithPortals() {
+        Rule[] rules = {
+            Rule.of(Rule.PAD, 9),
+            Rule.of(Rule.MULTIPLY, 3),
+            Rule.of(Rule.REVERSE),
+        };
+        int[] portals = {
+            3, 0
+        };
+        assertSameSolutions(new CalculatorGame(9, 129, 5, rules, portals));
+    }
+
+    @Test
+    void sameSolutionsForShippedLevels() {
+        for (String testCasePath : Helpers.testCasePaths()) {
+            CalculatorGame level = Serialize.loadTestCase(testCasePath).GAME;
+            if (CompiledSolver.supports(level)) assertSameSolutions(level);
+        }
+    }
+
+    @Test
+    void solveMatchesSolverWhateverItUses() {
+        Rule[] store = {
+            Rule.of(Rule.STORE)
+        };
+        Rule[] add = {
+            Rule.of(Rule.ADD, 1),
+            Rule.of(Rule.SUBTRACT, 1),
+        };
+        CalculatorGame unsupported =
+            new CalculatorGame(1, 1111, 4, store, null);
+        // 2^27 moves to search, enough to compile
+        CalculatorGame large = new CalculatorGame(0, 27, 27, add, null);
+
+        assertFalse(CompiledSolver.supports(unsupported));
+        assertEquals(
+            Solver.getAllSolutions(unsupported),
+            CompiledSolver.solve(unsupported)
+        );
+        assertEquals(
+            Solver.getAllSolutions(large),
+            CompiledSolver.solve(large)
+        );
+    }
+
+    private static void assertSameSolutions(CalculatorGame game) {
+        assertEquals(
+            Solver.getAllSolutions(game),
+            new CompiledSolver(game).getAllSolutions()
+        );
+    }
+}
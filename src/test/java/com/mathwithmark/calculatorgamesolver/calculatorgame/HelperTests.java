@@ -1,6 +1,8 @@
 package com.mathwithmark.calculatorgamesolver.calculatorgame;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 
 import org.junit.jupiter.api.Test;
 
@@ -74,6 +76,16 @@ class NumDigitsTests {
         assertEquals(expected, actual);
     }
 
+    @Test
+    void minValue() {
+        int value = Integer.MIN_VALUE;
+        int expected = 10;
+
+        int actual = Helpers.numDigits(value);
+
+        assertEquals(expected, actual);
+    }
+
     @Test
     void multipleDigits() {
         int value = 12345;
@@ -84,3 +96,91 @@ class NumDigitsTests {
         assertEquals(expected, actual);
     }
 }
+
+class DigitOpsTests {
+    @Test
+    void convertReplacesLikeStrings() {
+        String[][] conversions = {
+            {
+                "1", "2"
+            }, {
+                "11", "3"
+            }, {
+                "01", "10"
+            }, {
+                "2", "002"
+            },
+        };
+        for (String[] conversion : conversions) {
+            for (int value = -2000; value <= 2000; value++) {
+                String expected =
+                    String.valueOf(value).replace(conversion[0], conversion[1]);
+
+                long actual =
+                    DigitOps
+                        .convert(
+                            value,
+                            Long.parseLong(conversion[0]),
+                            conversion[0].length(),
+                            Long.parseLong(conversion[1]),
+                            conversion[1].length()
+                        );
+
+                assertEquals(Long.parseLong(expected), actual);
+            }
+        }
+    }
+
+    @Test
+    void mirrorAndReverseKeepTheSign() {
+        assertEquals(-1221, DigitOps.mirror(-12));
+        assertEquals(1001, DigitOps.mirror(10));
+        assertEquals(-21, DigitOps.reverse(-120));
+    }
+
+    @Test
+    void padAppendsDigits() {
+        assertEquals(-120, DigitOps.pad(-12, 0));
+        assertEquals(5, DigitOps.pad(0, 5));
+        assertEquals(DigitOps.OUT_OF_RANGE, DigitOps.pad(12, -3));
+    }
+
+    @Test
+    void tooManyDigitsAreOutOfRange() {
+        assertEquals(
+            DigitOps.OUT_OF_RANGE,
+            DigitOps.mirror(Integer.MIN_VALUE)
+        );
+        assertEquals(
+            DigitOps.OUT_OF_RANGE,
+            DigitOps.pad(Integer.MAX_VALUE, Integer.MAX_VALUE)
+        );
+    }
+}
+
+class PortalTableTests {
+    @Test
+    void tableMatchesDigitOps() {
+        for (int left = 1; left < Config.MAX_DIGITS; left++) {
+            for (int right = 0; right < left; right++) {
+                PortalTable table = PortalTable.of(left, right);
+                for (int value = -99_999; value <= 99_999; value += 37) {
+                    assertEquals(
+                        DigitOps.applyPortals(value, left, right),
+                        table.apply(value)
+                    );
+                }
+            }
+        }
+    }
+
+    @Test
+    void tablesAreShared() {
+        assertSame(PortalTable.of(4, 1), PortalTable.of(4, 1));
+    }
+
+    @Test
+    void portalsPastTheDigitsHaveNoTable() {
+        assertNull(PortalTable.of(Config.MAX_DIGITS, 0));
+    }
+}
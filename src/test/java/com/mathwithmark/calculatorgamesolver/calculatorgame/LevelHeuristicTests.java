@@ -0,0 +1,114 @@
+package com.mathwithmark.calculatorgamesolver.calculatorgame;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.mathwithmark.calculatorgamesolver.brutesolver.Heuristic;
+import com.mathwithmark.calculatorgamesolver.brutesolver.IdaStarSolver;
+import com.mathwithmark.calculatorgamesolver.brutesolver.Solver;
+
+import org.junit.jupiter.api.Test;
+
+public class LevelHeuristicTests {
+    @Test
+    void distanceTableIsExact() {
+        Rule[] rules = {
+            Rule.of(Rule.ADD, 1),
+            Rule.of(Rule.MULTIPLY, 2),
+        };
+        CalculatorGame game = new CalculatorGame(1, 12, 5, rules, null);
+        LevelHeuristic heuristic = LevelHeuristic.withDistanceTable(game);
+
+        assertTrue(heuristic.hasDistanceTable());
+        assertTrue(heuristic.getTableExpandedNodes() > 0);
+        // 1 +1 *2 +1 *2 = 12
+        assertEquals(4, heuristic.lowerBound(game));
+    }
+
+    @Test
+    void noDistanceTableByDefault() {
+        Rule[] rules = {
+            Rule.of(Rule.ADD, 1),
+            Rule.of(Rule.MULTIPLY, 2),
+        };
+        CalculatorGame game = new CalculatorGame(1, 12, 5, rules, null);
+        LevelHeuristic heuristic = new LevelHeuristic(game);
+
+        assertFalse(heuristic.hasDistanceTable());
+        assertEquals(0, heuristic.getTableExpandedNodes());
+        // 1 has one digit fewer than 12, and *2 adds at most one
+        assertEquals(1, heuristic.lowerBound(game));
+    }
+
+    @Test
+    void magnitudeBound() {
+        Rule[] rules = {
+            Rule.of(Rule.ADD, 5),
+            Rule.of(Rule.SUBTRACT, 2),
+            Rule.of(Rule.SIGN),
+        };
+        CalculatorGame game = new CalculatorGame(-3, 40, 9, rules, null);
+
+        // The magnitude grows by at most 5 a move, from 3 to 40
+        assertEquals(8, new LevelHeuristic(game).lowerBound(game));
+    }
+
+    @Test
+    void sameSolutionsWithFewerExpandedNodes() {
+        Rule[] rules = {
+            Rule.of(Rule.ADD, 1),
+            Rule.of(Rule.ADD, 2),
+            Rule.of(Rule.ADD, 5),
+            Rule.of(Rule.SUBTRACT, 3),
+        };
+        CalculatorGame game = new CalculatorGame(0, 23, 6, rules, null);
+        IdaStarSolver blind = new IdaStarSolver(Heuristic.NONE);
+        IdaStarSolver informed = new IdaStarSolver(new LevelHeuristic(game));
+
+        assertEquals(
+            Solver.getShortestSolutions(game),
+            informed.getShortestSolutions(game)
+        );
+        blind.getShortestSolutions(game);
+        assertTrue(informed.getExpandedNodes() < blind.getExpandedNodes());
+    }
+
+    @Test
+    void digitsBoundWithoutTable() {
+        Rule[] rules = {
+            Rule.of(Rule.PAD, 1),
+            Rule.of(Rule.STORE),
+        };
+        CalculatorGame game = new CalculatorGame(0, 1000, 5, rules, null);
+        LevelHeuristic heuristic = new LevelHeuristic(game);
+
+        assertFalse(heuristic.hasDistanceTable());
+        // Store can add up to five digits at once
+        assertEquals(1, heuristic.lowerBound(game));
+    }
+
+    @Test
+    void signThatCantChangeIsUnwinnable() {
+        Rule[] rules = {
+            Rule.of(Rule.REVERSE),
+            Rule.of(Rule.STORE),
+        };
+        CalculatorGame game = new CalculatorGame(12, -21, 5, rules, null);
+
+        assertEquals(
+            Heuristic.UNWINNABLE,
+            new LevelHeuristic(game).lowerBound(game)
+        );
+    }
+
+    @Test
+    void wonGameNeedsNoMoves() {
+        Rule[] rules = {
+            Rule.of(Rule.ADD, 1)
+        };
+        CalculatorGame game = new CalculatorGame(3, 3, 2, rules, null);
+
+        assertEquals(0, new LevelHeuristic(game).lowerBound(game));
+    }
+}
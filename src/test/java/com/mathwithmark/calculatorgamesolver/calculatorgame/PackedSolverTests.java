@@ -0,0 +1,149 @@
+package com.mathwithmark.calculatorgamesolver.calculatorgame;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.mathwithmark.calculatorgamesolver.brutesolver.Solver;
+
+import org.junit.jupiter.api.Test;
+
+public class PackedSolverTests {
+    @Test
+    void sameSolutionsAsSolver() {
+        Rule[] rules = {
+            Rule.of(Rule.ADD, 1),
+            Rule.of(Rule.ADD, 2),
+            Rule.of(Rule.SIGN),
+        };
+        assertSameSolutions(new CalculatorGame(0, 4, 3, rules, null));
+    }
+
+    @Test
+    void sameSolutionsWithMetaAdd() {
+        Rule[] rules = {
+            Rule.of(Rule.ADD, 1),
+            Rule.of(Rule.PAD, 2),
+            Rule.of(Rule.META_ADD, 1),
+        };
+        assertSameSolutions(new CalculatorGame(1, 23, 3, rules, null));
+    }
+
+    @Test
+    void sameSolutionsWithStore() {
+        Rule[] rules = {
+            Rule.of(Rule.STORE)
+        };
+        assertSameSolutions(new CalculatorGame(1, 1111, 4, rules, null));
+    }
+
+    @Test
+    void sameSolutionsWithPortals() {
+        Rule[] rules = {
+            Rule.of(Rule.PAD, 9),
+            Rule.of(Rule.MULTIPLY, 3),
+            Rule.of(Rule.REVERSE),
+        };
+        int[] portals = {
+            3, 0
+        };
+        assertSameSolutions(new CalculatorGame(9, 129, 5, rules, portals));
+    }
+
+    @Test
+    void overflowingMovesAreInvalid() {
+        // 65536 * 65536 and (-50)^7 would wrap to 0 and Integer.MIN_VALUE
+        Rule[] multiply = {
+            Rule.of(Rule.MULTIPLY, 65536)
+        };
+        Rule[] power = {
+            Rule.of(Rule.POWER, 7),
+            Rule.of(Rule.DIVIDE, 1_000_000),
+        };
+        CalculatorGame[] games = {
+            new CalculatorGame(65536, 0, 1, multiply, null),
+            new CalculatorGame(-50, -2147, 2, power, null),
+        };
+
+        for (CalculatorGame game : games) {
+            assertTrue(Solver.getAllSolutions(game).isEmpty());
+            assertSameSolutions(game);
+        }
+    }
+
+    @Test
+    void tooManyMovesIsUnsupported() {
+        Rule[] rules = {
+            Rule.of(Rule.ADD, 1)
+        };
+        CalculatorGame game = new CalculatorGame(0, 1, 128, rules, null);
+
+        assertFalse(PackedSolver.supports(game));
+        assertThrows(
+            IllegalArgumentException.class,
+            () -> new PackedSolver(game)
+        );
+    }
+
+    private static void assertSameSolutions(CalculatorGame game) {
+        assertEquals(
+            Solver.getAllSolutions(game),
+            new PackedSolver(game).getAllSolutions()
+        );
+    }
+}
+
+class TransitionTableTests {
+    @Test
+    void appliesRuleThenPortals() {
+        Rule rule = Rule.of(Rule.MULTIPLY, 7);
+        int[] portals = {
+            3, 0
+        };
+        TransitionTable table = TransitionTable.of(rule, portals);
+        Rule[] rules = {
+            rule
+        };
+        int max = PackedLevel.MAX_VALUE;
+
+        for (int value = -max; value <= max; value += 997) {
+            CalculatorGame next =
+                rule.apply(new CalculatorGame(value, 0, 1, rules, null));
+            int expected =
+                next == null
+                    ? PackedLevel.INVALID_VALUE
+                    : new CalculatorGame(next.getValue(), 0, 1, rules, portals)
+                        .getValue();
+            assertEquals(expected, table.nextValue(value));
+        }
+    }
+
+    @Test
+    void levelsShareTables() {
+        Rule rule = Rule.of("8765=>4321");
+        int[] portals = {
+            4, 2
+        };
+        TransitionTable table = TransitionTable.of(rule, portals);
+
+        assertSame(table, TransitionTable.of(rule, portals.clone()));
+        assertNotSame(table, TransitionTable.of(rule, null));
+    }
+
+    @Test
+    void rulesWrittenAlikeDontShareTables() {
+        // Both are written as "-1"
+        Rule pad = Rule.of(Rule.PAD, -1);
+        Rule subtract = Rule.of(Rule.SUBTRACT, 1);
+
+        assertEquals(pad.toString(), subtract.toString());
+        assertEquals(
+            PackedLevel.INVALID_VALUE,
+            TransitionTable.of(pad, null).nextValue(5)
+        );
+        assertEquals(4, TransitionTable.of(subtract, null).nextValue(5));
+    }
+}
@@ -0,0 +1,172 @@
+package com.mathwithmark.calculatorgamesolver.calculatorgame;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+import com.mathwithmark.calculatorgamesolver.brutesolver.Solver;
+
+import org.junit.jupiter.api.Test;
+
+public class ReachabilityMapTests {
+    private static final Rule[] RULES = {
+        Rule.of(Rule.ADD, 3),
+        Rule.of(Rule.MULTIPLY, 2),
+        Rule.of(Rule.REVERSE),
+    };
+
+    @Test
+    void sameLengthAsBitsetSolverForEveryGoal() {
+        ReachabilityMap map =
+            ReachabilityMap.of(new CalculatorGame(1, 0, 5, RULES, null));
+
+        for (int goal = -50; goal <= 100; goal++) {
+            CalculatorGame level = new CalculatorGame(1, goal, 5, RULES, null);
+            List<String> solution = map.getShortestSolution(level);
+            assertTrue(map.covers(level));
+            assertEquals(
+                new BitsetSolver(level).getShortestLength(),
+                solution == null ? -1 : solution.size()
+            );
+            if (solution != null) {
+                assertTrue(Solver.getAllSolutions(level).contains(solution));
+            }
+        }
+    }
+
+    @Test
+    void fewerMoves() {
+        ReachabilityMap map =
+            ReachabilityMap.of(new CalculatorGame(1, 0, 5, RULES, null));
+        CalculatorGame level = new CalculatorGame(1, 16, 2, RULES, null);
+
+        assertEquals(3, map.getDistance(16));
+        assertTrue(map.covers(level));
+        assertNull(map.getShortestSolution(level));
+    }
+
+    @Test
+    void startIsNotASolution() {
+        ReachabilityMap map =
+            ReachabilityMap.of(new CalculatorGame(1, 0, 5, RULES, null));
+
+        assertEquals(0, map.getDistance(1));
+        assertNull(
+            map.getShortestSolution(new CalculatorGame(1, 1, 5, RULES, null))
+        );
+    }
+
+    @Test
+    void otherLevelsAreNotCovered() {
+        ReachabilityMap map =
+            ReachabilityMap.of(new CalculatorGame(1, 0, 5, RULES, null));
+        CalculatorGame otherStart = new CalculatorGame(2, 8, 5, RULES, null);
+        CalculatorGame moreMoves = new CalculatorGame(1, 8, 6, RULES, null);
+        int[] portals = {
+            2, 0
+        };
+        CalculatorGame withPortals =
+            new CalculatorGame(1, 8, 5, RULES, portals);
+
+        assertFalse(map.covers(otherStart));
+        assertFalse(map.covers(moreMoves));
+        assertFalse(map.covers(withPortals));
+        assertThrows(
+            IllegalArgumentException.class,
+            () -> map.getShortestSolution(otherStart)
+        );
+    }
+
+    @Test
+    void writeAndRead() throws IOException {
+        int[] portals = {
+            3, 1
+        };
+        CalculatorGame level = new CalculatorGame(7, 0, 6, RULES, portals);
+        ReachabilityMap map = ReachabilityMap.of(level);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        map.write(out);
+        ReachabilityMap read =
+            ReachabilityMap.read(new ByteArrayInputStream(out.toByteArray()));
+
+        assertEquals(map.size(), read.size());
+        assertTrue(read.covers(level));
+        for (int goal = 0; goal < 1000; goal++) {
+            CalculatorGame withGoal =
+                new CalculatorGame(7, goal, 6, RULES, portals);
+            assertEquals(map.getDistance(goal), read.getDistance(goal));
+            assertEquals(
+                map.getShortestSolution(withGoal),
+                read.getShortestSolution(withGoal)
+            );
+        }
+    }
+
+    @Test
+    void writeAndReadManyRules() throws IOException {
+        Rule[] rules = new Rule[200];
+        for (int i = 0; i < rules.length; i++) {
+            rules[i] = Rule.of(Rule.ADD, i + 1);
+        }
+        CalculatorGame level = new CalculatorGame(0, 200, 1, rules, null);
+        ReachabilityMap map = ReachabilityMap.of(level);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        map.write(out);
+        ReachabilityMap read =
+            ReachabilityMap.read(new ByteArrayInputStream(out.toByteArray()));
+
+        assertEquals(map.size(), read.size());
+        assertEquals(
+            map.getShortestSolution(level),
+            read.getShortestSolution(level)
+        );
+    }
+
+    @Test
+    void readingNegativeValuesFails() throws IOException {
+        CalculatorGame level = new CalculatorGame(7, 0, 2, RULES, null);
+        ReachabilityMap map = ReachabilityMap.of(level);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        map.write(out);
+        byte[] data = out.toByteArray();
+
+        // The rule of the last value is the last two bytes
+        byte[] badRule = data.clone();
+        badRule[badRule.length - 2] = -1;
+        badRule[badRule.length - 1] = -2;
+        assertThrows(
+            IOException.class,
+            () -> ReachabilityMap.read(new ByteArrayInputStream(badRule))
+        );
+
+        // The size comes before the values, each 10 bytes
+        int sizeIndex = data.length - 10 * map.size() - 4;
+        byte[] badSize = data.clone();
+        badSize[sizeIndex] = (byte) 0xFF;
+        assertThrows(
+            IOException.class,
+            () -> ReachabilityMap.read(new ByteArrayInputStream(badSize))
+        );
+    }
+
+    @Test
+    void readingOtherDataFails() {
+        byte[] data = {
+            1, 2, 3, 4, 5, 6, 7, 8
+        };
+
+        assertThrows(
+            IOException.class,
+            () -> ReachabilityMap.read(new ByteArrayInputStream(data))
+        );
+    }
+}
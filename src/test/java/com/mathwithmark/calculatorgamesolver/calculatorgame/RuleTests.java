@@ -1,6 +1,12 @@
 package com.mathwithmark.calculatorgamesolver.calculatorgame;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import org.junit.jupiter.api.Test;
 
@@ -40,6 +46,42 @@ class RuleConstructorTests {
         assertStringCreatesRule(ruleString, Rule.MULTIPLY, operand1);
     }
 
+    @Test
+    void negativeOperandsAfterAnOperator() {
+        assertEquals(Rule.of(Rule.ADD, -5), Rule.of("+-5"));
+        assertEquals(Rule.of(Rule.SUBTRACT, -5), Rule.of("--5"));
+        assertEquals(Rule.of(Rule.META_ADD, -3), Rule.of("[+]-3"));
+    }
+
+    @Test
+    void operatorsIgnoreCase() {
+        assertEquals(Rule.of(Rule.MIRROR), Rule.of("mirror"));
+        assertEquals(Rule.of(Rule.ADD, 3), Rule.of(" + 3"));
+    }
+
+    @Test
+    void convertKeepsLeadingZeros() {
+        assertEquals("01=>1", Rule.of("01=>1").toString());
+    }
+
+    @Test
+    void equalRulesAreShared() {
+        assertSame(Rule.of(Rule.ADD, 5), Rule.of("+5"));
+        assertSame(Rule.of(Rule.SIGN), Rule.of(Rule.SIGN, 3));
+        assertSame(Rule.of(Rule.PAD, 123456), Rule.of("123456"));
+        assertSame(Rule.of("12=>34"), Rule.of(Rule.CONVERT, 12, 34));
+        assertSame(Rule.stored(123456), Rule.stored(123456));
+        assertNotSame(Rule.of(Rule.STORE), Rule.stored(0));
+    }
+
+    @Test
+    void overflowingOperandsThrow() {
+        assertThrows(
+            NumberFormatException.class,
+            () -> Rule.of("+99999999999")
+        );
+    }
+
     /**
      * Asserts that the given string creates a rule with the given operator and
      * that both operands are 0
@@ -302,3 +344,110 @@ class RuleApplyTests {
         assertApplyRule(newValue, rule, gameValue);
     }
 }
+
+class RuleAlgebraTests {
+    @Test
+    void additionsOfTheSameSignCommute() {
+        assertTrue(RuleAlgebra.commute(Rule.of("+3"), Rule.of("+5"), false));
+        Rule addNegative = Rule.of(Rule.ADD, -5);
+        assertTrue(RuleAlgebra.commute(Rule.of("-3"), addNegative, false));
+        // 999998 -5 +3 is valid, but 999998 +3 is not
+        assertFalse(RuleAlgebra.commute(Rule.of("+3"), Rule.of("-5"), false));
+    }
+
+    @Test
+    void signCommutesWithOddRules() {
+        Rule sign = Rule.of(Rule.SIGN);
+
+        assertTrue(RuleAlgebra.commute(Rule.of("*2"), sign, false));
+        assertTrue(RuleAlgebra.commute(sign, Rule.of(Rule.REVERSE), true));
+        assertFalse(RuleAlgebra.commute(sign, Rule.of("+1"), false));
+        // 0 padded with 1 is 1, but its negation padded with 1 is also 1
+        assertFalse(RuleAlgebra.commute(sign, Rule.of("1"), false));
+    }
+
+    @Test
+    void portalsStopMostRulesCommuting() {
+        assertTrue(RuleAlgebra.commute(Rule.of("*2"), Rule.of("*3"), false));
+        assertFalse(RuleAlgebra.commute(Rule.of("*2"), Rule.of("*3"), true));
+    }
+
+    @Test
+    void zeroFactorsDontCommute() {
+        // 500000 *10 is invalid, but 500000 *0 *10 is not
+        assertFalse(RuleAlgebra.commute(Rule.of("*0"), Rule.of("*10"), false));
+    }
+
+    @Test
+    void noOps() {
+        assertTrue(RuleAlgebra.isNoOp(Rule.of("*1"), 12, false, 0));
+        assertTrue(RuleAlgebra.isNoOp(Rule.of(Rule.SIGN), 0, false, 0));
+        assertTrue(RuleAlgebra.isNoOp(Rule.of(Rule.REVERSE), 121, false, 0));
+        assertFalse(RuleAlgebra.isNoOp(Rule.of(Rule.REVERSE), 120, false, 0));
+        assertFalse(RuleAlgebra.isNoOp(Rule.of("*2"), 12, false, 0));
+        Rule updateStore = Rule.of(Rule.UPDATE_STORE);
+        assertTrue(RuleAlgebra.isNoOp(updateStore, 12, true, 12));
+        assertFalse(RuleAlgebra.isNoOp(updateStore, 12, false, 0));
+    }
+
+    @Test
+    void undoingMoves() {
+        assertTrue(
+            RuleAlgebra.undoes(Rule.of("-3"), Rule.of("+3"), 5, 2, false)
+        );
+        assertTrue(
+            RuleAlgebra.undoes(Rule.of("/2"), Rule.of("*2"), 10, 5, false)
+        );
+        // A portal took 999 +3 to 3, so -3 doesn't give back 999
+        assertFalse(
+            RuleAlgebra.undoes(Rule.of("-3"), Rule.of("+3"), 3, 999, true)
+        );
+        // Reversing 120 gives 21, which reverses to 12
+        Rule reverse = Rule.of(Rule.REVERSE);
+        assertFalse(RuleAlgebra.undoes(reverse, reverse, 21, 120, false));
+        assertTrue(RuleAlgebra.undoes(reverse, reverse, 21, 12, false));
+    }
+}
+
+class RuleApplyToValueTests {
+    @Test
+    void applyToValueMatchesApply() {
+        String[] ruleStrings = {
+            "+3", "-3", "*-3", "/3", "30", "+/-", "<<", "12=>2", "^3",
+            "Reverse", "SUM", "Shift >", "< Shift", "Mirror", "Inv10",
+        };
+        for (String ruleString : ruleStrings) {
+            Rule rule = Rule.of(ruleString);
+            for (int value = -9_999; value <= 9_999; value += 7) {
+                CalculatorGame game =
+                    new CalculatorGame(value, 0, 1, new Rule[0], null);
+                CalculatorGame next = rule.apply(game);
+                if (next == null) continue;
+                assertEquals(next.getValue(), rule.applyToValue(value));
+            }
+        }
+    }
+
+    @Test
+    void dividingByZeroIsInvalid() {
+        CalculatorGame game = new CalculatorGame(12, 0, 1, new Rule[0], null);
+        assertNull(Rule.of("/0").apply(game));
+        assertEquals(Rule.INVALID_VALUE, Rule.of("/0").applyToValue(12));
+    }
+
+    @Test
+    void overflowingResultsDontWrap() {
+        assertEquals(65536L * 65536, Rule.of("*65536").applyToValue(65536));
+        assertEquals(
+            -(long) Integer.MIN_VALUE,
+            Rule.of("+/-").applyToValue(Integer.MIN_VALUE)
+        );
+        assertEquals(Rule.INVALID_VALUE, Rule.of("^7").applyToValue(-50));
+    }
+
+    @Test
+    void rulesThatChangeMoreThanTheValueHaveNoValue() {
+        assertEquals(Rule.INVALID_VALUE, Rule.of("[+]1").applyToValue(12));
+        assertEquals(Rule.INVALID_VALUE, Rule.of(Rule.STORE).applyToValue(12));
+    }
+}
@@ -0,0 +1,141 @@
+package com.mathwithmark.calculatorgamesolver.calculatorgame;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import com.mathwithmark.calculatorgamesolver.brutesolver.Solver;
+
+import org.junit.jupiter.api.Test;
+
+public class SolutionCacheTests {
+    @Test
+    void secondLookupHitsMemory() {
+        SolutionCache cache = new SolutionCache(8);
+        CalculatorGame level = level(Rule.of(Rule.ADD, 1), Rule.of(Rule.SIGN));
+
+        assertNull(cache.get(level));
+        assertEquals(
+            Solver.getAllSolutions(level),
+            cache.getAllSolutions(level)
+        );
+        assertEquals(
+            Solver.getAllSolutions(level),
+            cache.getAllSolutions(level)
+        );
+        assertEquals(1, cache.getMemoryHits());
+        assertEquals(2, cache.getMisses());
+    }
+
+    @Test
+    void ruleOrderSharesAnEntry() {
+        SolutionCache cache = new SolutionCache(8);
+        CalculatorGame level =
+            level(Rule.of(Rule.ADD, 1), Rule.of(Rule.ADD, 2), Rule.of("*2"));
+        CalculatorGame reordered =
+            level(Rule.of("*2"), Rule.of(Rule.ADD, 2), Rule.of(Rule.ADD, 1));
+
+        cache.getAllSolutions(level);
+
+        assertEquals(
+            SolutionCache.fingerprint(level),
+            SolutionCache.fingerprint(reordered)
+        );
+        assertNotEquals(
+            Solver.getAllSolutions(level),
+            Solver.getAllSolutions(reordered)
+        );
+        assertEquals(Solver.getAllSolutions(reordered), cache.get(reordered));
+        assertEquals(1, cache.getMemoryHits());
+    }
+
+    @Test
+    void leastRecentlyUsedIsEvicted() {
+        SolutionCache cache = new SolutionCache(1);
+        CalculatorGame first = level(Rule.of(Rule.ADD, 1));
+        CalculatorGame second = level(Rule.of(Rule.ADD, 2));
+
+        cache.getAllSolutions(first);
+        cache.getAllSolutions(second);
+
+        assertEquals(1, cache.size());
+        assertEquals(1, cache.getEvictions());
+        assertNull(cache.get(first));
+    }
+
+    @Test
+    void cachesShareADirectory() throws IOException {
+        CalculatorGame level = level(Rule.of(Rule.ADD, 1), Rule.of("*2"));
+        File directory = Files.createTempDirectory("solutions").toFile();
+        String path = directory.getPath();
+
+        try {
+            try (
+                SolutionCache writer = new SolutionCache(8, path);
+                SolutionCache reader = new SolutionCache(8, path)
+            ) {
+                writer.getAllSolutions(level);
+
+                assertEquals(Solver.getAllSolutions(level), reader.get(level));
+                assertEquals(1, reader.getDiskHits());
+            }
+            try (SolutionCache reopened = new SolutionCache(8, path)) {
+                assertEquals(
+                    Solver.getAllSolutions(level),
+                    reopened.get(level)
+                );
+            }
+        } finally {
+            delete(directory);
+        }
+    }
+
+    @Test
+    void recordCutShortIsOverwritten() throws IOException {
+        CalculatorGame first = level(Rule.of(Rule.ADD, 1));
+        CalculatorGame second = level(Rule.of(Rule.ADD, 2));
+        File directory = Files.createTempDirectory("solutions").toFile();
+        String path = directory.getPath();
+
+        try {
+            try (SolutionCache cache = new SolutionCache(8, path)) {
+                cache.getAllSolutions(first);
+            }
+            File log = new File(directory, SolutionCache.LOG_FILE_NAME);
+            // The start of a record whose writer stopped partway
+            try (FileOutputStream out = new FileOutputStream(log, true)) {
+                out.write(new byte[] {
+                    0, 0, 1, 0, 42
+                });
+            }
+            try (SolutionCache cache = new SolutionCache(8, path)) {
+                cache.getAllSolutions(second);
+            }
+
+            try (SolutionCache cache = new SolutionCache(8, path)) {
+                assertEquals(Solver.getAllSolutions(first), cache.get(first));
+                assertEquals(
+                    Solver.getAllSolutions(second),
+                    cache.get(second)
+                );
+            }
+        } finally {
+            delete(directory);
+        }
+    }
+
+    /** @return a level from 1 to 4 in 3 moves with the given rules */
+    private static CalculatorGame level(Rule... rules) {
+        return new CalculatorGame(1, 4, 3, rules, null);
+    }
+
+    private static void delete(File directory) {
+        for (File file : directory.listFiles()) file.delete();
+        directory.delete();
+    }
+}
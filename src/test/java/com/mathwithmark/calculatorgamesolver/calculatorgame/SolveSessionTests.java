@@ -0,0 +1,104 @@
+package com.mathwithmark.calculatorgamesolver.calculatorgame;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import com.mathwithmark.calculatorgamesolver.brutesolver.Solver;
+
+import org.junit.jupiter.api.Test;
+
+public class SolveSessionTests {
+    @Test
+    void raisingTheBudgetSearchesOnlyNewMoves() {
+        Rule[] rules = {
+            Rule.of(Rule.ADD, 3),
+            Rule.of(Rule.MULTIPLY, 2),
+        };
+        CalculatorGame level = new CalculatorGame(1, 22, 2, rules, null);
+        SolveSession session = new SolveSession(level);
+
+        assertNull(session.getShortestSolution(2));
+        assertEquals(2, session.getSearchedMoves());
+        assertNull(session.getShortestSolution(3));
+        assertEquals(3, session.getSearchedMoves());
+        assertShortest(withMoves(level, 4), session.getShortestSolution(4));
+        assertEquals(4, session.getSearchedMoves());
+    }
+
+    @Test
+    void loweringTheBudgetDoesntSearch() {
+        Rule[] rules = {
+            Rule.of(Rule.ADD, 3),
+            Rule.of(Rule.MULTIPLY, 2),
+        };
+        CalculatorGame level = new CalculatorGame(1, 22, 6, rules, null);
+        SolveSession session = new SolveSession(level);
+
+        assertEquals(4, session.getShortestLength(6));
+        assertEquals(-1, session.getShortestLength(3));
+        assertEquals(4, session.getShortestLength(5));
+        assertEquals(4, session.getSearchedMoves());
+    }
+
+    @Test
+    void storeLevelsKeepStates() {
+        Rule[] rules = {
+            Rule.of(Rule.STORE),
+            Rule.of(Rule.ADD, 1),
+        };
+        CalculatorGame level = new CalculatorGame(1, 1212, 2, rules, null);
+        SolveSession session = new SolveSession(level);
+
+        assertNull(session.getShortestSolution(2));
+        for (int moves = 3; moves <= 5; moves++) {
+            List<String> solution = session.getShortestSolution(moves);
+            CalculatorGame withMoves = withMoves(level, moves);
+            if (solution == null) {
+                assertTrue(Solver.getAllSolutions(withMoves).isEmpty());
+            } else {
+                assertShortest(withMoves, solution);
+            }
+        }
+    }
+
+    @Test
+    void coversOnlyOtherMoves() {
+        Rule[] rules = {
+            Rule.of(Rule.ADD, 3)
+        };
+        CalculatorGame level = new CalculatorGame(1, 22, 2, rules, null);
+        SolveSession session = new SolveSession(level);
+
+        assertTrue(session.covers(withMoves(level, 9)));
+        assertFalse(session.covers(new CalculatorGame(1, 21, 2, rules, null)));
+    }
+
+    private static CalculatorGame withMoves(CalculatorGame level, int moves) {
+        return new CalculatorGame(
+            level.getValue(),
+            level.getGoal(),
+            moves,
+            level.getRules(),
+            level.getPortals()
+        );
+    }
+
+    /**
+     * Asserts the solution is one of the level's solutions and no other is
+     * shorter
+     */
+    private static void assertShortest(
+        CalculatorGame level,
+        List<String> solution
+    ) {
+        List<List<String>> solutions = Solver.getAllSolutions(level);
+        assertTrue(solutions.contains(solution));
+        for (List<String> other : solutions) {
+            assertTrue(solution.size() <= other.size());
+        }
+    }
+}
@@ -17,6 +17,7 @@ import com.mathwithmark.calculatorgamesolver.calculatorgame.Rule;
 
 import org.junit.jupiter.api.Test;
 
+import com.mathwithmark.calculatorgamesolver.brutesolver.Solver;
 import com.mathwithmark.calculatorgamesolver.brutesolver.State;
 
 public class MainTests {
@@ -88,6 +89,64 @@ public class MainTests {
         assertMainAgainWorks(value, goal, moves, rules, solution);
     }
 
+    /**
+     * Tests that an eighth argument limits how many solutions are printed
+     */
+    @Test
+    void limitSolutions() {
+        String[] ruleStrings = {
+            Config.ruleString(Rule.ADD, 1),
+            Config.ruleString(Rule.ADD, 2),
+        };
+        String[] args =
+            Arrays.copyOf(TestUtils.args(0, 4, 4, ruleStrings, null), 8);
+        args[7] = "1";
+        IoUtils.prepareEndToEndTest(Config.QUIT);
+
+        Main.main(args);
+
+        assertEquals(1, countSolutions(IoUtils.output()));
+    }
+
+    @Test
+    void limitOnlyLastsOneSession() {
+        String[] ruleStrings = {
+            Config.ruleString(Rule.ADD, 1),
+            Config.ruleString(Rule.ADD, 2),
+        };
+        String[] args =
+            Arrays.copyOf(TestUtils.args(0, 4, 4, ruleStrings, null), 8);
+        args[7] = "1";
+        IoUtils
+            .prepareEndToEndTest(
+                inputString(true, 0, 4, 4, ruleStrings, null)
+            );
+
+        Main.main(args);
+
+        // 1 solution with the limit, then every solution without it
+        String output = IoUtils.output();
+        int second = output.indexOf(Config.START_PROMPT);
+        CalculatorGame game =
+            new CalculatorGame(0, 4, 4, Helpers.rules(ruleStrings), null);
+        assertEquals(1, countSolutions(output.substring(0, second)));
+        assertEquals(
+            Solver.getAllSolutions(game).size(),
+            countSolutions(output.substring(second))
+        );
+    }
+
+    /** @return the number of solutions printed in the output */
+    private static int countSolutions(String output) {
+        int count = 0;
+        int index = output.indexOf(Config.SOLUTION_PROMPT);
+        while (index >= 0) {
+            count++;
+            index = output.indexOf(Config.SOLUTION_PROMPT, index + 1);
+        }
+        return count;
+    }
+
     /** Asserts that the given parameters create the given game in Main.main */
     private void assertCreatesGame(
         int value,
@@ -27,6 +27,28 @@ public class PlayTests {
         Play.main(new String[0]);
     }
 
+    @Test
+    void hintGivesFirstMove() {
+        IoUtils.prepareEndToEndTest(hintThenQuitInput());
+
+        Play.main(new String[0]);
+
+        String hint = String.format(Play.HINT_MESSAGE, "+1");
+        assertTrue(IoUtils.output().contains(hint));
+    }
+
+    /**
+     * @return the input string to ask for a hint on the first level, then to
+     * quit the game
+     */
+    private String hintThenQuitInput() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(1).append("\n"); // first level index
+        sb.append(Play.HINT_INPUT).append("\n");
+        sb.append(Play.QUIT_LEVEL_INPUT).append("\n");
+        return sb.toString();
+    }
+
     /**
      * @return the input string to quit a level, then to quit the game
      */